@@ -15,7 +15,8 @@ import java.util.List;
 @Entity
 @Table(name = "wqservice_coupon", indexes = {
     @Index(name = "idx_code", columnList = "code", unique = true),
-    @Index(name = "idx_status", columnList = "status")
+    // 加载启用且未过期的优惠券（status = 1 AND end_time >= now），也覆盖只按 status 的查询
+    @Index(name = "idx_status_end_time", columnList = "status, end_time")
 })
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -20,7 +20,9 @@ import java.time.LocalDateTime;
     @Index(name = "idx_service_id", columnList = "service_id"),
     @Index(name = "idx_provider_id", columnList = "provider_id"),
     @Index(name = "idx_status", columnList = "status"),
-    @Index(name = "idx_booking_date", columnList = "booking_date")
+    @Index(name = "idx_booking_date", columnList = "booking_date"),
+    // 按区域查询订单时先用经纬度范围（外接矩形）过滤，再计算球面距离
+    @Index(name = "idx_location", columnList = "latitude, longitude")
 })
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -95,6 +97,14 @@ public class ServiceOrder extends AbstractHibernateBean {
     @Column(name = "detail_address", length = 255, nullable = false)
     private String detailAddress;
 
+    @Schema(description = "服务地址经度", example = "113.943560")
+    @Column(name = "longitude", precision = 10, scale = 6)
+    private BigDecimal longitude;
+
+    @Schema(description = "服务地址纬度", example = "22.540503")
+    @Column(name = "latitude", precision = 10, scale = 6)
+    private BigDecimal latitude;
+
     // ========== 价格信息 ==========
 
     @Schema(description = "原价（元）", example = "128.00")
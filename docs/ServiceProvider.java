@@ -19,7 +19,8 @@ import java.util.List;
 @Entity
 @Table(name = "wqservice_provider", indexes = {
     @Index(name = "idx_phone", columnList = "phone", unique = true),
-    @Index(name = "idx_status", columnList = "status")
+    // 查找附近的空闲服务人员：status 等值 + 纬度范围过滤，再按经度和球面距离筛选（同时覆盖按 status 查询）
+    @Index(name = "idx_status_location", columnList = "status, latitude, longitude")
 })
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -117,6 +118,20 @@ public class ServiceProvider extends AbstractHibernateBean {
     @JoinColumn(name = "community_id", insertable = false, updatable = false)
     private Community community;
 
+    // ========== 位置信息 ==========
+
+    @Schema(description = "常驻地址", example = "深圳市南山区科技园南区XX大厦")
+    @Column(name = "address", length = 255)
+    private String address;
+
+    @Schema(description = "常驻地址经度", example = "113.943560")
+    @Column(name = "longitude", precision = 10, scale = 6)
+    private BigDecimal longitude;
+
+    @Schema(description = "常驻地址纬度", example = "22.540503")
+    @Column(name = "latitude", precision = 10, scale = 6)
+    private BigDecimal latitude;
+
     // ========== 关联订单 ==========
 
     @OneToMany(mappedBy = "provider", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
@@ -1,6 +1,7 @@
 import { history } from '@umijs/max';
 import { message } from 'antd';
 import type { InitialState, UserInfo } from './types/auth';
+import { isTokenUsable } from './utils/token';
 
 // 注意：这里不能直接 import { request }，因为我们导出了 request 配置
 // 在运行时配置中，request 会自动被注入
@@ -50,6 +51,11 @@ export async function getInitialState(): Promise<InitialState> {
   }
 
   try {
+    // 令牌已过期，不再请求服务端
+    if (!isTokenUsable(accessToken)) {
+      throw new Error('登录已过期');
+    }
+
     // 获取用户信息（直接使用 fetch，手动添加 token）
     const response = await fetch('/api/admin/auth/info', {
       method: 'GET',
@@ -5,14 +5,28 @@ import type { ActionType, ProColumns } from '@ant-design/pro-components';
 import type { GenericCrudConfig, FormFieldConfig } from './types';
 import CreateModal from './components/CreateModal';
 import UpdateModal from './components/UpdateModal';
-import { mergeFormFields } from './utils/formHelper';
-import { getEntityFields, queryEntity, createEntity, updateEntity, deleteEntity } from '@/services/genericEntity';
+import ImportModal from './components/ImportModal';
+import { mergeFormFields, pickChangedValues } from './utils/formHelper';
+import {
+  getEntityFields,
+  getEntityById,
+  queryEntity,
+  createEntity,
+  updateEntity,
+  deleteEntity,
+  softDeleteEntity,
+} from '@/services/genericEntity';
+import { exportEntity, exportRows } from '@/services/export';
+import { createRecordConverter, importEntities } from '@/services/import';
+import type { ImportResult } from '@/services/import';
+import { detectImportFormat, readImportRecords } from '@/utils/import';
+import dayjs from 'dayjs';
 import {
   convertEntityFieldsToColumns,
   convertEntityFieldsToFormFields,
   type EntityFieldInfo,
 } from './utils/entityFieldMapper';
-import { PlusOutlined, DeleteOutlined, EditOutlined, ExportOutlined } from '@ant-design/icons';
+import { PlusOutlined, DeleteOutlined, EditOutlined, ExportOutlined, ImportOutlined } from '@ant-design/icons';
 import './styles.css';
 
 /**
@@ -40,13 +54,16 @@ const GenericCrud = <T extends Record<string, any>>({
   permissions = {},
   renderItemActions,
   renderToolbar,
+  renderToolbarExtra,
   callbacks = {},
   data, // ⭐ 新增：表单默认值
 }: GenericCrudConfig<T>) => {
   // 状态管理
   const actionRef = useRef<ActionType>();
   const [createModalVisible, setCreateModalVisible] = useState(false);
+  const [createDefaults, setCreateDefaults] = useState<Record<string, any> | undefined>();
   const [updateModalVisible, setUpdateModalVisible] = useState(false);
+  const [importModalVisible, setImportModalVisible] = useState(false);
   const [currentRecord, setCurrentRecord] = useState<T | null>(null);
   const [selectedRows, setSelectedRows] = useState<T[]>([]);
   const [selectedRowKeys, setSelectedRowKeys] = useState<any[]>([]);
@@ -58,6 +75,16 @@ const GenericCrud = <T extends Record<string, any>>({
   const [generatedColumns, setGeneratedColumns] = useState<ProColumns<T>[]>([]);
   const [generatedFormFields, setGeneratedFormFields] = useState<FormFieldConfig[]>([]);
 
+  // 游标分页状态：页码 -> 游标，查询条件、排序或每页条数变化时重置
+  const cursorStateRef = useRef<{ key: string; cursors: Map<number, string>; total: number }>({
+    key: '',
+    cursors: new Map(),
+    total: 0,
+  });
+
+  // 最近一次列表查询的条件和排序（导出全部数据时复用）
+  const lastQueryRef = useRef<{ conditions?: Record<string, any>; sort?: Record<string, any> }>({});
+
   // 获取动态字段信息
   useEffect(() => {
     if (dynamicEntity) {
@@ -111,6 +138,25 @@ const GenericCrud = <T extends Record<string, any>>({
     return formFields || [];
   }, [dynamicEntity, generatedFormFields, formFields]);
 
+  // ⭐ 列表查询返回的字段（fetch：只查询表格展示的字段）
+  const fetchFields = useMemo(() => {
+    if (!dynamicEntity?.fetch) {
+      return undefined;
+    }
+    const fields =
+      dynamicEntity.fetch === true
+        ? finalColumns
+            .filter((column) => !column.hideInTable)
+            .map((column) => column.dataIndex as string)
+            .filter(Boolean)
+        : dynamicEntity.fetch;
+    // 主键始终需要返回
+    return Array.from(new Set([rowKey, ...fields]));
+  }, [dynamicEntity, finalColumns, rowKey]);
+
+  // ⭐ 逻辑删除标记字段
+  const softDeleteField = dynamicEntity?.softDelete === true ? 'deleted' : dynamicEntity?.softDelete || undefined;
+
   // 确定 CRUD 操作
   const finalCrudOperations = useMemo(() => {
     if (dynamicEntity && !crudOperations) {
@@ -131,51 +177,119 @@ const GenericCrud = <T extends Record<string, any>>({
               }
             });
           }
+          if (softDeleteField && conditions[softDeleteField] === undefined) {
+            conditions[softDeleteField] = 0;
+          }
 
-          // 再应用用户输入的查询条件
+          // 收集用户输入的查询条件
+          const values: Record<string, any> = {};
           Object.entries(rest).forEach(([key, value]) => {
             if (value !== undefined && value !== null && value !== '') {
-              // 检查字段类型
-              const fieldInfo = entityFields[key];
-              if (fieldInfo) {
-                // 兼容新格式（只有 type）和旧格式（有 typeName）
-                const typeName = fieldInfo.typeName || fieldInfo.type || '';
-
-                // 字符串类型使用模糊查询
-                if (typeName.includes('String') || typeName === 'string') {
-                  conditions[key] = { $like: value };
-                }
-                // 其他类型保持原值
-                else {
-                  conditions[key] = value;
-                }
-              } else {
-                // 未知字段类型，默认使用模糊查询（适用于文本输入）
+              values[key] = value;
+            }
+          });
+
+          // ⭐ 关键词检索：命中的 ID 作为条件，与其他查询条件一起在服务端过滤
+          const keywordField = dynamicEntity.keywordSearch?.field;
+          if (keywordField && values[keywordField] !== undefined) {
+            const ids = await dynamicEntity.keywordSearch!.search(String(values[keywordField]));
+            // 没有结果（null 或空数组）时保留该字段，按模糊查询处理
+            if (ids && ids.length > 0) {
+              delete values[keywordField];
+              conditions._id = { $in: ids };
+            }
+          }
+
+          // 再应用用户输入的查询条件
+          Object.entries(values).forEach(([key, value]) => {
+            // 检查字段类型
+            const fieldInfo = entityFields[key];
+            if (fieldInfo) {
+              // 兼容新格式（只有 type）和旧格式（有 typeName）
+              const typeName = fieldInfo.typeName || fieldInfo.type || '';
+
+              // 字符串类型使用模糊查询
+              if (typeName.includes('String') || typeName === 'string') {
                 conditions[key] = { $like: value };
               }
+              // 其他类型保持原值
+              else {
+                conditions[key] = value;
+              }
+            } else {
+              // 未知字段类型，默认使用模糊查询（适用于文本输入）
+              conditions[key] = { $like: value };
             }
           });
 
+          const finalConditions = Object.keys(conditions).length > 0 ? conditions : undefined;
+          lastQueryRef.current = { conditions: finalConditions, sort };
+
+          // ⭐ 游标分页：已知游标的页直接 seek，跳页（游标未知）时回退到普通分页
+          if (dynamicEntity.pagination === 'cursor' && current !== undefined && pageSize !== undefined) {
+            const state = cursorStateRef.current;
+            const stateKey = `${pageSize}#${JSON.stringify(finalConditions || {})}#${JSON.stringify(sort || {})}`;
+            if (state.key !== stateKey) {
+              state.key = stateKey;
+              state.cursors = new Map([[1, '']]);
+              state.total = 0;
+            }
+
+            const cursor = state.cursors.get(current);
+            if (cursor !== undefined) {
+              const result = await queryEntity<T>(dynamicEntity.entityName, {
+                pageSize,
+                cursor,
+                conditions: finalConditions,
+                sort,
+                fetch: fetchFields,
+                readOnly: true,
+                // 只在首页估算总数，后续页不再统计
+                countMode: current === 1 ? 'estimate' : 'none',
+              });
+
+              if (result.nextCursor) {
+                state.cursors.set(current + 1, result.nextCursor);
+              }
+              if (current === 1) {
+                state.total = result.total;
+              }
+
+              // 估算值不足时至少保证还能翻到下一页
+              const loaded = (current - 1) * pageSize + result.data.length;
+              return {
+                ...result,
+                total: Math.max(state.total, result.nextCursor ? loaded + 1 : loaded),
+              };
+            }
+          }
+
           return queryEntity<T>(dynamicEntity.entityName, {
             current,
             pageSize,
-            conditions: Object.keys(conditions).length > 0 ? conditions : undefined,
+            conditions: finalConditions,
             sort,
+            fetch: fetchFields,
+            // 列表只用于展示，使用只读查询
+            readOnly: true,
           });
         },
-        create: async (data: any) => {
+        create: dynamicEntity.writeOperations?.create || (async (data: any) => {
           return createEntity(dynamicEntity.entityName, data);
-        },
-        update: async (id: any, data: any) => {
+        }),
+        update: dynamicEntity.writeOperations?.update || (async (id: any, data: any) => {
           return updateEntity(dynamicEntity.entityName, id, data);
-        },
-        delete: async (id: any) => {
+        }),
+        delete: dynamicEntity.writeOperations?.delete || (async (id: any) => {
+          if (softDeleteField) {
+            return softDeleteEntity(dynamicEntity.entityName, id, softDeleteField);
+          }
           return deleteEntity(dynamicEntity.entityName, id);
-        },
+        }),
       };
     }
     return crudOperations;
-  }, [dynamicEntity, crudOperations, entityFields]);
+  }, [dynamicEntity, crudOperations, entityFields, fetchFields]);
 
   // 默认功能开关
   const defaultFeatures = {
@@ -185,6 +299,7 @@ const GenericCrud = <T extends Record<string, any>>({
     batchDelete: finalCrudOperations?.delete !== undefined,
     selection: true,
     export: false,
+    import: false,
     ...features,
   };
 
@@ -240,23 +355,45 @@ const GenericCrud = <T extends Record<string, any>>({
   // 新建操作
   const handleCreate = useCallback(() => {
     if (checkPermission(permissions.create)) {
+      // ⭐ 每次打开新建弹窗时计算默认值
+      setCreateDefaults(typeof data === 'function' ? data() : data);
       setCreateModalVisible(true);
     } else {
       message.warning('您没有新建权限');
     }
-  }, [checkPermission, permissions.create]);
+  }, [checkPermission, permissions.create, data]);
 
   // 编辑操作
   const handleEdit = useCallback(
-    (record: T) => {
-      if (checkPermission(permissions.update)) {
-        setCurrentRecord(record);
-        setUpdateModalVisible(true);
-      } else {
+    async (record: T) => {
+      if (!checkPermission(permissions.update)) {
         message.warning('您没有编辑权限');
+        return;
       }
+
+      // ⭐ 列表只查询了表格展示的字段，编辑前加载完整记录（记录已被删除时刷新列表，加载失败时使用列表中的记录）
+      if (dynamicEntity && fetchFields) {
+        try {
+          setLoading(true);
+          const fullRecord = await getEntityById<T>(dynamicEntity.entityName, record[rowKey]);
+          if (!fullRecord) {
+            message.warning('记录不存在或已被删除');
+            actionRef.current?.reload();
+            return;
+          }
+          setCurrentRecord(fullRecord);
+        } catch (error) {
+          message.warning('加载完整记录失败，部分字段可能未显示');
+          setCurrentRecord(record);
+        } finally {
+          setLoading(false);
+        }
+      } else {
+        setCurrentRecord(record);
+      }
+      setUpdateModalVisible(true);
     },
-    [checkPermission, permissions.update],
+    [checkPermission, permissions.update, dynamicEntity, fetchFields, rowKey],
   );
 
   // 删除操作
@@ -346,15 +483,94 @@ const GenericCrud = <T extends Record<string, any>>({
   ]);
 
   // 导出操作
+  // 导出：有选中行时导出选中行，否则按当前查询条件导出全部数据（服务端流式导出）
   const handleExport = useCallback(async () => {
-    if (selectedRows.length === 0) {
+    const exportColumns = finalColumns
+      .filter((column: any) => typeof column.dataIndex === 'string' && !column.hideInTable)
+      .map((column: any) => ({
+        dataIndex: column.dataIndex,
+        title: typeof column.title === 'string' ? column.title : column.dataIndex,
+      }));
+    const filename = `${headerTitle}_${dayjs().format('YYYYMMDDHHmmss')}.csv`;
+
+    if (selectedRows.length === 0 && !dynamicEntity) {
       message.warning('请至少选择一项');
       return;
     }
 
-    // 这里可以实现导出逻辑
-    message.info('导出功能待实现');
-  }, [selectedRows]);
+    try {
+      setLoading(true);
+      const count =
+        selectedRows.length > 0
+          ? await exportRows(selectedRows, { columns: exportColumns, filename })
+          : await exportEntity(dynamicEntity!.entityName, {
+              ...lastQueryRef.current,
+              columns: exportColumns,
+              filename,
+            });
+      if (count !== null) {
+        message.success(`已导出 ${count} 条数据`);
+      }
+    } catch (error) {
+      message.error('导出失败');
+    } finally {
+      setLoading(false);
+    }
+  }, [selectedRows, finalColumns, headerTitle, dynamicEntity]);
+
+  // 导入：CSV 表头可以使用列标题或字段名
+  const importColumns = useMemo(
+    () =>
+      mergedFormFields
+        .filter((field) => typeof field.name === 'string')
+        .map((field) => ({ dataIndex: field.name as string, title: field.label || (field.name as string) })),
+    [mergedFormFields],
+  );
+
+  const handleImport = useCallback(
+    async (file: File, onProgress: (result: ImportResult, percent: number) => void) => {
+      const headerMap: Record<string, string> = {};
+      importColumns.forEach(({ dataIndex, title }) => {
+        headerMap[title] = dataIndex;
+      });
+      const requiredFields = mergedFormFields
+        .filter((field) => field.required || field.rules?.some((rule: any) => rule?.required))
+        .map((field) => field.name as string);
+      const convert = createRecordConverter(entityFields, requiredFields);
+      const hooks = dynamicEntity?.importHooks?.() || {};
+
+      let bytesRead = 0;
+      const result = await importEntities(
+        dynamicEntity!.entityName,
+        readImportRecords(file, detectImportFormat(file.name), headerMap, (bytes) => {
+          bytesRead = bytes;
+        }),
+        {
+          // 未填写的字段使用表单默认值
+          prepare: (record) => {
+            const converted = convert({ ...(typeof data === 'function' ? data() : data), ...record });
+            return typeof converted === 'string' || !hooks.transform ? converted : hooks.transform(converted);
+          },
+          dataField: dynamicEntity?.dataField,
+          onProgress: (progress) =>
+            onProgress(progress, file.size > 0 ? Math.min(99, Math.floor((bytesRead / file.size) * 100)) : 0),
+        },
+      );
+
+      await hooks.complete?.(result);
+      if (result.succeeded > 0) {
+        actionRef.current?.reload();
+        callbacks.onImportSuccess?.(result);
+      }
+      return result;
+    },
+    [importColumns, mergedFormFields, entityFields, dynamicEntity, data, actionRef, callbacks],
+  );
+
+  // 下载导入模板（只有表头）
+  const handleDownloadTemplate = useCallback(() => {
+    exportRows([], { columns: importColumns, filename: `${headerTitle}_导入模板.csv` });
+  }, [importColumns, headerTitle]);
 
   // 新建提交
   const handleCreateSubmit = useCallback(
@@ -431,7 +647,7 @@ const GenericCrud = <T extends Record<string, any>>({
           setCreateModalVisible(false);
           actionRef.current?.reload();
           if (callbacks.onCreateSuccess) {
-            callbacks.onCreateSuccess();
+            callbacks.onCreateSuccess(convertedData);
           }
         } else {
           message.error('创建失败');
@@ -506,11 +722,21 @@ const GenericCrud = <T extends Record<string, any>>({
         };
 
         // 转换所有字段值
-        const convertedData: any = {};
+        let convertedData: any = {};
         Object.entries(values).forEach(([key, value]) => {
           convertedData[key] = convertValue(key, value);
         });
 
+        // ⭐ 部分更新：只提交修改过的字段，没有修改时直接关闭弹窗
+        if (dynamicEntity?.partialUpdate) {
+          convertedData = pickChangedValues(convertedData, currentRecord);
+          if (Object.keys(convertedData).length === 0) {
+            setUpdateModalVisible(false);
+            setCurrentRecord(null);
+            return;
+          }
+        }
+
         // ⭐ 如果配置了 dataField，将所有值包装到该字段中
         let submitData = convertedData;
         if (dynamicEntity?.dataField) {
@@ -527,7 +753,7 @@ const GenericCrud = <T extends Record<string, any>>({
           setCurrentRecord(null);
           actionRef.current?.reload();
           if (callbacks.onUpdateSuccess) {
-            callbacks.onUpdateSuccess();
+            callbacks.onUpdateSuccess(convertedData, currentRecord);
           }
         } else {
           message.error('更新失败');
@@ -559,6 +785,7 @@ const GenericCrud = <T extends Record<string, any>>({
           return renderItemActions(record, {
             handleEdit: () => handleEdit(record),
             handleDelete: () => handleDelete(record[rowKey]),
+            reload: () => actionRef.current?.reload(),
             record,
           });
         }
@@ -614,6 +841,7 @@ const GenericCrud = <T extends Record<string, any>>({
       handleCreate,
       handleBatchDelete,
       handleExport,
+      reload: () => actionRef.current?.reload(),
       selectedRows,
       selectedRowKeys,
     };
@@ -647,19 +875,31 @@ const GenericCrud = <T extends Record<string, any>>({
             批量删除 {selectedRows.length > 0 && `(${selectedRows.length})`}
           </Button>
         )}
-        {defaultFeatures.export && selectedRows.length > 0 && (
+        {defaultFeatures.export && (selectedRows.length > 0 || dynamicEntity) && (
           <Button
             icon={<ExportOutlined />}
             onClick={handleExport}
+            loading={loading}
             size="large"
           >
             导出 {selectedRows.length > 0 && `(${selectedRows.length})`}
           </Button>
         )}
+        {defaultFeatures.import && dynamicEntity && checkPermission(permissions.create) && (
+          <Button
+            icon={<ImportOutlined />}
+            onClick={() => setImportModalVisible(true)}
+            size="large"
+          >
+            导入
+          </Button>
+        )}
+        {renderToolbarExtra && renderToolbarExtra(toolbarContext)}
       </>
     );
   }, [
     renderToolbar,
+    renderToolbarExtra,
     defaultFeatures,
     permissions,
     checkPermission,
@@ -669,6 +909,7 @@ const GenericCrud = <T extends Record<string, any>>({
     selectedRows,
     selectedRowKeys,
     loading,
+    dynamicEntity,
   ]);
 
   // 加载中状态
@@ -744,7 +985,7 @@ const GenericCrud = <T extends Record<string, any>>({
           width={ui.createModal?.width || 600}
           loading={loading}
           customFormComponent={customFormComponents?.create}
-          data={data} // ⭐ 传递默认值
+          data={createDefaults} // ⭐ 传递默认值
         />
       )}
 
@@ -766,6 +1007,16 @@ const GenericCrud = <T extends Record<string, any>>({
           dataField={dynamicEntity?.dataField} // ⭐ 传递数据包装字段
         />
       )}
+
+      {/* 导入弹窗 */}
+      {defaultFeatures.import && dynamicEntity && (
+        <ImportModal
+          visible={importModalVisible}
+          onCancel={() => setImportModalVisible(false)}
+          onImport={handleImport}
+          onDownloadTemplate={handleDownloadTemplate}
+        />
+      )}
     </>
   );
 };
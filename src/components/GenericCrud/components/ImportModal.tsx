@@ -0,0 +1,127 @@
+import React, { useState, useEffect } from 'react';
+import { Modal, Upload, Progress, Alert, Table, Button, Space } from 'antd';
+import { InboxOutlined, DownloadOutlined } from '@ant-design/icons';
+import type { ImportModalProps } from '../types';
+import type { ImportResult } from '@/services/import';
+
+/**
+ * 批量导入弹窗组件
+ * 选择 CSV/NDJSON 文件后流式解析并分块提交，显示进度和出错的行
+ */
+const ImportModal: React.FC<ImportModalProps> = ({
+  visible,
+  onCancel,
+  onImport,
+  onDownloadTemplate,
+  title = '批量导入',
+}) => {
+  const [importing, setImporting] = useState(false);
+  const [result, setResult] = useState<ImportResult | null>(null);
+  const [percent, setPercent] = useState(0);
+  const [errorMessage, setErrorMessage] = useState<string>();
+
+  // 重新打开时清空上次的结果
+  useEffect(() => {
+    if (visible) {
+      setResult(null);
+      setPercent(0);
+      setErrorMessage(undefined);
+    }
+  }, [visible]);
+
+  const handleFile = async (file: File) => {
+    setImporting(true);
+    setResult(null);
+    setPercent(0);
+    setErrorMessage(undefined);
+    try {
+      const finalResult = await onImport(file, (progress, nextPercent) => {
+        setResult(progress);
+        setPercent(nextPercent);
+      });
+      setResult(finalResult);
+      setPercent(100);
+    } catch (error: any) {
+      setErrorMessage(error?.message || '导入失败');
+    } finally {
+      setImporting(false);
+    }
+  };
+
+  return (
+    <Modal
+      title={title}
+      open={visible}
+      onCancel={importing ? undefined : onCancel}
+      closable={!importing}
+      maskClosable={false}
+      width={720}
+      footer={
+        <Space>
+          {onDownloadTemplate && (
+            <Button icon={<DownloadOutlined />} onClick={onDownloadTemplate} disabled={importing}>
+              下载模板
+            </Button>
+          )}
+          <Button onClick={onCancel} disabled={importing}>
+            关闭
+          </Button>
+        </Space>
+      }
+      destroyOnClose
+    >
+      <Upload.Dragger
+        accept=".csv,.ndjson,.jsonl"
+        showUploadList={false}
+        disabled={importing}
+        beforeUpload={(file) => {
+          handleFile(file);
+          // 不使用 Upload 自带的上传，由前端解析后分块提交
+          return false;
+        }}
+      >
+        <p className="ant-upload-drag-icon">
+          <InboxOutlined />
+        </p>
+        <p className="ant-upload-text">点击或拖拽文件到此处导入</p>
+        <p className="ant-upload-hint">
+          支持 CSV（第一行为表头，可使用字段名或列标题）和 NDJSON（每行一个 JSON 对象）
+        </p>
+      </Upload.Dragger>
+
+      {result && (
+        <div style={{ marginTop: 16 }}>
+          <Progress
+            percent={percent}
+            status={importing ? 'active' : result.failed > 0 ? 'exception' : 'success'}
+          />
+          <Alert
+            style={{ marginTop: 8 }}
+            type={result.failed > 0 ? 'warning' : 'success'}
+            message={`${importing ? '已读取' : '共'} ${result.total} 行，成功 ${result.succeeded} 行，失败 ${result.failed} 行`}
+          />
+        </div>
+      )}
+
+      {errorMessage && (
+        <Alert style={{ marginTop: 16 }} type="error" message={errorMessage} />
+      )}
+
+      {result && result.errors.length > 0 && (
+        <Table
+          style={{ marginTop: 16 }}
+          size="small"
+          rowKey="row"
+          dataSource={result.errors}
+          pagination={{ pageSize: 10, showSizeChanger: false }}
+          columns={[
+            { title: '行号', dataIndex: 'row', width: 80 },
+            { title: '错误原因', dataIndex: 'message' },
+          ]}
+        />
+      )}
+    </Modal>
+  );
+};
+
+export default ImportModal;
@@ -45,6 +45,7 @@ const RelationSelect: React.FC<RelationSelectProps> = ({
         const result = await queryEntity(entityName, {
           current: 1,
           pageSize: 1000, // 获取所有数据
+          readOnly: true, // 选项只用于展示
         });
 
         if (result.success && result.data) {
@@ -1,5 +1,6 @@
 import type { ProColumns } from '@ant-design/pro-components';
 import type { ReactNode } from 'react';
+import type { ImportHooks, ImportResult } from '@/services/import';
 
 /**
  * 请求返回数据格式
@@ -8,6 +9,8 @@ export interface RequestData<T = any> {
   data: T[];
   success: boolean;
   total: number;
+  // 游标分页时下一页的游标（没有下一页时为空）
+  nextCursor?: string;
 }
 
 /**
@@ -76,6 +79,8 @@ export interface FeatureConfig {
   batchDelete?: boolean;
   selection?: boolean;
   export?: boolean;
+  // ⭐ 批量导入（CSV/NDJSON，仅动态实体）
+  import?: boolean;
 }
 
 /**
@@ -116,6 +121,8 @@ export interface PermissionConfig {
 export interface ActionContext<T = any> {
   handleEdit: () => void;
   handleDelete: () => void;
+  // 刷新列表
+  reload: () => void;
   record: T;
 }
 
@@ -126,6 +133,8 @@ export interface ToolbarContext {
   handleCreate: () => void;
   handleBatchDelete: () => void;
   handleExport: () => void;
+  // 刷新列表
+  reload: () => void;
   selectedRows: any[];
   selectedRowKeys: any[];
 }
@@ -134,9 +143,11 @@ export interface ToolbarContext {
  * 回调函数配置
  */
 export interface CallbackConfig {
-  onCreateSuccess?: () => void;
-  onUpdateSuccess?: () => void;
+  // data 为提交的数据，record 为更新前的记录
+  onCreateSuccess?: (data?: any) => void;
+  onUpdateSuccess?: (data?: any, record?: any) => void;
   onDeleteSuccess?: () => void;
+  onImportSuccess?: (result: ImportResult) => void;
   onError?: (error: any, operation: 'list' | 'create' | 'update' | 'delete') => void;
 }
 
@@ -200,6 +211,43 @@ export interface DynamicEntityConfig {
   // 例如：filter: { communityId: 'xxx' } - 只查询该社区的数据
   filter?: Record<string, any>;
 
+  // ⭐ 逻辑删除（softDelete：列表只查询未删除的数据，删除时把删除标记设为 1）
+  // true - 删除标记字段为 deleted
+  // 'isDeleted' - 指定删除标记字段
+  softDelete?: boolean | string;
+
+  // ⭐ 分页方式（pagination：大表建议使用游标分页）
+  // 'offset' - 默认，pageNum/pageSize 分页，每页统计精确总数
+  // 'cursor' - 游标（seek）分页，翻页耗时不随页码增长，总数只在首页估算
+  //            需要服务端支持 cursor 参数并返回 nextCursor，服务端上线前不要开启
+  pagination?: 'offset' | 'cursor';
+
+  // ⭐ 列表查询字段（fetch：只查询需要的列，跳过大文本/JSON 字段）
+  // true - 只查询表格中展示的字段（hideInTable 的字段不查询）
+  // ['name', 'price'] - 只查询指定字段
+  // 主键始终返回；编辑时会重新加载完整记录
+  fetch?: true | string[];
+
+  // ⭐ 部分更新（partialUpdate：编辑时只提交修改过的字段）
+  // 适用于计数、库存等会被其他业务并发修改的实体，避免用表单中的旧值覆盖
+  partialUpdate?: boolean;
+
+  // ⭐ 关键词检索（keywordSearch：该查询字段不使用模糊查询，先通过检索索引得到匹配的ID）
+  // 例如：keywordSearch: { field: 'name', search: (keyword) => searchCatalogIds('product', keyword) }
+  // search 返回 null 或空数组时该字段按普通模糊查询处理（索引不可用、命中过多或没有命中）
+  keywordSearch?: {
+    field: string;
+    search: (keyword: string) => Promise<string[] | null>;
+  };
+
+  // ⭐ 自定义写操作（writeOperations：替换通用的新增/更新/删除，列表查询仍使用通用实现）
+  // 例如：新增订单明细时在同一个批量请求中扣减库存
+  writeOperations?: Pick<CrudOperations, 'create' | 'update' | 'delete'>;
+
+  // ⭐ 导入扩展（importHooks：每次导入调用一次，返回行转换和导入完成回调）
+  // 例如：导入收货地址时保证每个用户只有一个默认地址
+  importHooks?: () => ImportHooks;
+
   // ⭐ 新增：数据包装字段（所有表单字段包装到该属性中）
   // 例如：dataField = "data"，提交时变为 { data: { name: "张三", age: 25 } }
   dataField?: string;
@@ -242,12 +290,15 @@ export interface GenericCrudConfig<T = any> {
   // 自定义渲染
   renderItemActions?: (record: T, actions: ActionContext<T>) => ReactNode;
   renderToolbar?: (actions: ToolbarContext) => ReactNode;
+  // 追加在默认工具栏按钮之后的自定义按钮
+  renderToolbarExtra?: (actions: ToolbarContext) => ReactNode;
 
   // 回调函数
   callbacks?: CallbackConfig;
 
   // ⭐ 新增：表单默认值（用于创建表单的初始值）
-  data?: Record<string, any>;
+  // 传函数时每次打开新建弹窗都会重新计算（如生成订单号）
+  data?: Record<string, any> | (() => Record<string, any>);
 }
 
 /**
@@ -292,3 +343,19 @@ export interface UpdateModalProps {
   customFormComponent?: React.ComponentType<any>;
   dataField?: string; // ⭐ 新增：数据包装字段
 }
+
+/**
+ * ImportModal 组件 Props
+ */
+export interface ImportModalProps {
+  visible: boolean;
+  onCancel: () => void;
+  // 导入文件，onProgress 用于更新进度（percent 为文件已读取的百分比）
+  onImport: (
+    file: File,
+    onProgress: (result: ImportResult, percent: number) => void,
+  ) => Promise<ImportResult>;
+  // 下载导入模板
+  onDownloadTemplate?: () => void;
+  title?: string;
+}
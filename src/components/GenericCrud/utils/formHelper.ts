@@ -142,3 +142,50 @@ export function buildValidationRules(field: FormFieldConfig): any[] {
 
   return rules;
 }
+
+/**
+ * 判断两个字段值是否相同
+ * 数字与数字字符串（如 12 和 "12.0"）视为相同，空值之间视为相同
+ */
+function isSameFieldValue(a: any, b: any): boolean {
+  if (a === b) return true;
+
+  const isEmpty = (value: any) => value === undefined || value === null || value === '';
+  if (isEmpty(a) || isEmpty(b)) {
+    return isEmpty(a) && isEmpty(b);
+  }
+
+  if (typeof a === 'object' || typeof b === 'object') {
+    return JSON.stringify(a) === JSON.stringify(b);
+  }
+
+  const numA = Number(a);
+  const numB = Number(b);
+  if (!isNaN(numA) && !isNaN(numB)) {
+    return numA === numB;
+  }
+
+  return String(a) === String(b);
+}
+
+/**
+ * 提取相对原始记录发生变化的字段
+ * 用于部分更新：只提交修改过的字段，避免覆盖其他地方并发修改的字段
+ * @param values 表单值
+ * @param record 原始记录
+ * @returns 变化的字段
+ */
+export function pickChangedValues(
+  values: Record<string, any>,
+  record: Record<string, any>,
+): Record<string, any> {
+  const changed: Record<string, any> = {};
+
+  Object.keys(values).forEach((key) => {
+    if (!isSameFieldValue(values[key], record[key])) {
+      changed[key] = values[key];
+    }
+  });
+
+  return changed;
+}
@@ -0,0 +1,105 @@
+import React from 'react';
+import MapPicker from './index';
+import type { LocationInfo } from './index';
+
+/**
+ * GenericCrud 地址字段配置
+ * 地址字段只保存地址字符串，在地图上选点后同时填写 longitude / latitude（以及省市区）字段，
+ * 与社区管理页面的地址字段保存方式一致
+ */
+export interface LocationFieldOptions {
+  placeholder?: string;
+  modalTitle?: string;
+  // 是否同时填写 province / city / district 字段
+  fillRegion?: boolean;
+}
+
+/**
+ * 地址字段的表单渲染配置（合并到 fieldOverrides 中对应的地址字段）
+ */
+export function createLocationField(options: LocationFieldOptions = {}) {
+  const { placeholder = '请点击选择位置', modalTitle = '选择位置', fillRegion = false } = options;
+
+  return {
+    renderFormItem: (formProps: any) => {
+      const form = formProps.form;
+      const locationValue: LocationInfo = {
+        address: formProps.value?.address || formProps.value || '',
+        lng: form?.getFieldValue('longitude'),
+        lat: form?.getFieldValue('latitude'),
+        province: form?.getFieldValue('province'),
+        city: form?.getFieldValue('city'),
+        district: form?.getFieldValue('district'),
+      };
+
+      return (
+        <MapPicker
+          value={locationValue}
+          config={{
+            amapKey: process.env.AMAP_KEY,
+            mapType: 'amap',
+            defaultCenter: [116.397428, 39.90923], // 北京天安门
+            defaultZoom: 15,
+          }}
+          placeholder={placeholder}
+          modalTitle={modalTitle}
+          modalWidth={900}
+          onChange={(locationInfo) => {
+            formProps.onChange?.(locationInfo?.address || '');
+            if (!form || !locationInfo) return;
+
+            if (locationInfo.lng !== undefined && locationInfo.lng !== null) {
+              form.setFieldValue('longitude', locationInfo.lng);
+            }
+            if (locationInfo.lat !== undefined && locationInfo.lat !== null) {
+              form.setFieldValue('latitude', locationInfo.lat);
+            }
+            if (fillRegion) {
+              if (locationInfo.province) form.setFieldValue('province', locationInfo.province);
+              if (locationInfo.city) form.setFieldValue('city', locationInfo.city);
+              if (locationInfo.district) form.setFieldValue('district', locationInfo.district);
+            }
+          }}
+        />
+      );
+    },
+  };
+}
+
+/**
+ * 经纬度字段配置（地图选点后自动填写，也可手动修改）
+ */
+export function createCoordinateFields() {
+  return {
+    longitude: {
+      label: '经度',
+      valueType: 'text',
+      hideInSearch: true,
+      hideInTable: true,
+      rules: [
+        {
+          pattern: /^-?(\d{1,3}(\.\d+)?)?$/,
+          message: '请输入有效的经度（-180 到 180）',
+        },
+      ],
+      fieldProps: {
+        placeholder: '如：116.397428',
+      },
+    },
+    latitude: {
+      label: '纬度',
+      valueType: 'text',
+      hideInSearch: true,
+      hideInTable: true,
+      rules: [
+        {
+          pattern: /^-?(\d{1,2}(\.\d+)?)?$/,
+          message: '请输入有效的纬度（-90 到 90）',
+        },
+      ],
+      fieldProps: {
+        placeholder: '如：39.90923',
+      },
+    },
+  };
+}
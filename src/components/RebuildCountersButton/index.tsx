@@ -0,0 +1,48 @@
+import React, { useState } from 'react';
+import { Button, Popconfirm, message } from 'antd';
+import { SyncOutlined } from '@ant-design/icons';
+import type { RebuildCountersResult } from '@/services/counters';
+
+interface RebuildCountersButtonProps {
+  // 重新统计函数
+  rebuild: () => Promise<RebuildCountersResult>;
+  // 完成后的回调（通常用于刷新列表）
+  onFinish?: () => void;
+}
+
+/**
+ * 重新统计按钮
+ * 从评价、订单等源数据重新汇总冗余计数字段
+ */
+const RebuildCountersButton: React.FC<RebuildCountersButtonProps> = ({ rebuild, onFinish }) => {
+  const [loading, setLoading] = useState(false);
+
+  const handleConfirm = async () => {
+    try {
+      setLoading(true);
+      const { scanned, updated } = await rebuild();
+      message.success(`已重新统计 ${scanned} 条记录，更新 ${updated} 条`);
+      onFinish?.();
+    } catch (error) {
+      message.error('重新统计失败');
+    } finally {
+      setLoading(false);
+    }
+  };
+
+  return (
+    <Popconfirm
+      title="重新统计"
+      description="将根据评价和订单数据重新计算销量、评分等统计字段，统计期间的新订单、新评价可能需要再次统计校正，建议在业务低峰期执行，确定继续吗？"
+      onConfirm={handleConfirm}
+      okText="确定"
+      cancelText="取消"
+    >
+      <Button icon={<SyncOutlined />} loading={loading} size="large">
+        重新统计
+      </Button>
+    </Popconfirm>
+  );
+};
+
+export default RebuildCountersButton;
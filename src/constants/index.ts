@@ -26,3 +26,57 @@ export enum GenderEnum {
   MALE = 1, // 男
   FEMALE = 2, // 女,
 }
+
+// 商城订单状态
+export enum OrderStatusEnum {
+  PENDING = 0, // 待付款
+  PAID = 1, // 待发货
+  SHIPPED = 2, // 待收货
+  COMPLETED = 3, // 已完成
+  CANCELLED = 4, // 已取消
+}
+
+// 服务订单状态
+export enum ServiceOrderStatusEnum {
+  PENDING = 0, // 待支付
+  PAID = 1, // 待派单
+  ACCEPTED = 2, // 待服务
+  IN_SERVICE = 3, // 服务中
+  TO_REVIEW = 4, // 待评价
+  COMPLETED = 5, // 已完成
+  CANCELLED = 6, // 已取消
+  REFUNDED = 7, // 已退款
+}
+
+// 服务订单状态名称
+export const SERVICE_ORDER_STATUS = {
+  [ServiceOrderStatusEnum.PENDING]: '待支付',
+  [ServiceOrderStatusEnum.PAID]: '待派单',
+  [ServiceOrderStatusEnum.ACCEPTED]: '待服务',
+  [ServiceOrderStatusEnum.IN_SERVICE]: '服务中',
+  [ServiceOrderStatusEnum.TO_REVIEW]: '待评价',
+  [ServiceOrderStatusEnum.COMPLETED]: '已完成',
+  [ServiceOrderStatusEnum.CANCELLED]: '已取消',
+  [ServiceOrderStatusEnum.REFUNDED]: '已退款',
+};
+
+// 服务人员状态
+export enum ProviderStatusEnum {
+  OFFLINE = 0, // 离线
+  AVAILABLE = 1, // 空闲
+  BUSY = 2, // 服务中
+}
+
+// 服务优惠券类型
+export enum CouponTypeEnum {
+  AMOUNT = 1, // 减免金额
+  PERCENTAGE = 2, // 折扣比例
+  FREE = 3, // 免费服务
+}
+
+// 用户领取的服务优惠券状态
+export enum UserCouponStatusEnum {
+  UNUSED = 0, // 未使用
+  USED = 1, // 已使用
+  EXPIRED = 2, // 已过期
+}
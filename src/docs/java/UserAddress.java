@@ -5,13 +5,16 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import java.math.BigDecimal;
+
 /**
  * 用户收货地址实体
  */
 @Entity
 @Table(name = "user_address", indexes = {
-    @Index(name = "idx_user_id", columnList = "user_id"),
-    @Index(name = "idx_is_default", columnList = "is_default")
+    // 查询用户地址簿、清除用户的默认地址（WHERE user_id = ? AND is_default = 1）都走该索引，同时覆盖按 user_id 查询；
+    // is_default 只有 0/1 两个值，单独建索引区分度太低
+    @Index(name = "idx_user_default", columnList = "user_id, is_default")
 })
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -46,6 +49,14 @@ public class UserAddress extends AbstractHibernateBean {
     @Column(name = "detail_address", length = 255, nullable = false)
     private String detailAddress;
 
+    @Schema(description = "地址经度", example = "113.943560")
+    @Column(name = "longitude", precision = 10, scale = 6)
+    private BigDecimal longitude;
+
+    @Schema(description = "地址纬度", example = "22.540503")
+    @Column(name = "latitude", precision = 10, scale = 6)
+    private BigDecimal latitude;
+
     @Schema(description = "邮政编码", example = "518000")
     @Column(name = "postal_code", length = 10)
     private String postalCode;
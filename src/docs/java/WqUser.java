@@ -8,6 +8,8 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.hibernate.annotations.SQLDelete;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,16 +18,29 @@ import java.util.List;
 
 /**
  * WQ用户实体
+ * 逻辑删除：delete 改写为 UPDATE deleted = 1，所有查询自动追加 deleted = 0；
+ * 按手机号、社区查询的索引带上 deleted 列，在索引内即可排除已删除用户，
+ * idx_deleted 供后台定期清理已删除用户使用；
+ * openid 按 (openid, deleted) 唯一，逻辑删除时同时清空 openid，
+ * 同一微信用户删除后重新注册、多次删除都不会与已删除记录冲突
  */
 @Entity
-@Table(name = "wq_user")
+@Table(name = "wq_user", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_openid_deleted", columnNames = {"openid", "deleted"})
+}, indexes = {
+    @Index(name = "idx_phone_deleted", columnList = "phone, deleted"),
+    @Index(name = "idx_community_deleted", columnList = "community_id, deleted"),
+    @Index(name = "idx_deleted", columnList = "deleted")
+})
+@SQLDelete(sql = "UPDATE wq_user SET deleted = 1, openid = NULL WHERE _id = ?")
+@SQLRestriction("deleted = 0")
 @Data
 @EqualsAndHashCode(callSuper = true)
 @Schema(description = "WQ用户实体")
 public class WqUser extends AbstractHibernateBean {
 
     @Schema(description = "微信OpenID", example = "oX1234567890abcdef")
-    @Column(name = "openid", length = 64, unique = true)
+    @Column(name = "openid", length = 64)
     private String openid;
 
     @Schema(description = "微信UnionID", example = "ux1234567890abcdef")
@@ -163,6 +178,16 @@ public class WqUser extends AbstractHibernateBean {
     //        }
     //    }
 
+    /**
+     * 通过更新删除标记逻辑删除时（后台 update deleted = 1）同样清空 openid
+     */
+    @PreUpdate
+    protected void onUpdate() {
+        if (DeletedFlag.DELETED.getCode().equals(this.deleted)) {
+            this.openid = null;
+        }
+    }
+
     @PrePersist
     protected void onCreate() {
         if (get_id() == null || get_id().isEmpty()) {
@@ -22,6 +22,7 @@ import React, { useState, useEffect } from 'react';
 import { useNavigate, useLocation, Outlet, history } from 'umi';
 import ErrorBoundary from '@/components/ErrorBoundary';
 import { useModel } from '@umijs/max';
+import { logout } from '@/services/auth';
 
 const { Header, Sider, Content } = Layout;
 
@@ -40,10 +41,17 @@ const CustomLayout = () => {
       okText: '确定',
       cancelText: '取消',
       onOk: () => {
+        // 通知服务端吊销令牌（失败不影响本地退出）
+        const accessToken = localStorage.getItem('accessToken');
+        const refreshToken = localStorage.getItem('refreshToken');
+        logout(accessToken, refreshToken).catch(() => {});
+
         // 清除本地存储
         localStorage.removeItem('token');
         localStorage.removeItem('userInfo');
         localStorage.removeItem('accessToken');
+        localStorage.removeItem('refreshToken');
+        localStorage.removeItem('adminInfo');
         // 清除初始状态
         setInitialState({});
 
@@ -1,6 +1,9 @@
 import React from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
-import { Tag, Badge } from 'antd';
+import { Tag, Badge, Button, Popconfirm, message } from 'antd';
+import { DeleteOutlined } from '@ant-design/icons';
+import { createAddressImportHooks, invalidateAddressBook, saveAddress, setDefaultAddress } from '@/services/addressBook';
+import { createCoordinateFields, createLocationField } from '@/components/MapPicker/locationField';
 
 /**
  * 用户收货地址管理页面
@@ -12,6 +15,9 @@ import { Tag, Badge } from 'antd';
  * - 支持默认地址标记
  * - 支持地址标签分类（家、公司、学校）
  * - 显示完整地址信息
+ * - 地图选点，记录经纬度
+ * - 设置默认地址时在同一个批量请求中清除该用户原来的默认地址
+ * - 批量导入时每个用户只保留一个默认地址
  */
 export default function UserAddressPage() {
   return (
@@ -27,6 +33,21 @@ export default function UserAddressPage() {
         // 实体名称（小写）
         entityName: 'userAddress',
 
+        // 新增、修改时如果设为默认地址，同时清除该用户的其他默认地址
+        writeOperations: {
+          create: async (data: any) => {
+            await saveAddress(data);
+            return true;
+          },
+          update: async (id: any, data: any) => {
+            await saveAddress(data, id);
+            return true;
+          },
+        },
+
+        // 导入时每个用户只保留最后一条默认地址，导入结束后统一设置
+        importHooks: createAddressImportHooks,
+
         // 排除的字段
         excludeFields: [
           'wquser',  // 排除关联对象字段，只使用 userId 外键
@@ -154,8 +175,16 @@ export default function UserAddressPage() {
               ].filter(Boolean).join('');
               return <span style={{ fontSize: '12px' }}>{fullAddress}</span>;
             },
+            ...createLocationField({
+              placeholder: '请点击选择收货地址',
+              modalTitle: '选择收货地址',
+              fillRegion: true,
+            }),
           },
 
+          // 经纬度（地图选点后自动填写）
+          ...createCoordinateFields(),
+
           // 邮政编码
           postalCode: {
             label: '邮政编码',
@@ -247,6 +276,7 @@ export default function UserAddressPage() {
         batchDelete: true,
         selection: true,
         export: false,
+        import: true, // CSV/NDJSON 批量导入
       }}
 
       // UI 配置
@@ -287,10 +317,63 @@ export default function UserAddressPage() {
         onUpdateSuccess: () => {
         },
         onDeleteSuccess: () => {
+          invalidateAddressBook();
+        },
+        onImportSuccess: () => {
+          invalidateAddressBook();
         },
         onError: (error, operation) => {
         },
       }}
+
+      // 自定义操作列按钮
+      renderItemActions={(record, { handleEdit, handleDelete, reload }) => {
+        return (
+          <div style={{ display: 'flex', gap: '8px', alignItems: 'center' }}>
+            {/* 设为默认按钮（仅普通地址） */}
+            {Number(record.isDefault) !== 1 && (
+              <Button
+                type="link"
+                onClick={async () => {
+                  try {
+                    await setDefaultAddress(record.userId, record._id);
+                    message.success('已设为默认地址');
+                    reload();
+                  } catch (error: any) {
+                    message.error(error?.message || '设置默认地址失败');
+                  }
+                }}
+                style={{ padding: '4px 8px' }}
+              >
+                设为默认
+              </Button>
+            )}
+
+            {/* 编辑按钮 */}
+            <Button
+              type="link"
+              onClick={() => handleEdit()}
+              style={{ padding: '4px 8px' }}
+            >
+              编辑
+            </Button>
+
+            {/* 删除按钮 */}
+            <Popconfirm
+              title="确认删除"
+              description="确定要删除吗？此操作无法撤销。"
+              onConfirm={() => handleDelete()}
+              okText="确定"
+              cancelText="取消"
+              okButtonProps={{ danger: true }}
+            >
+              <Button type="link" danger icon={<DeleteOutlined />} style={{ padding: '4px 8px' }}>
+                删除
+              </Button>
+            </Popconfirm>
+          </div>
+        );
+      }}
     />
   );
 }
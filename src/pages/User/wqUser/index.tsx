@@ -26,6 +26,9 @@ export default function WqUserPage() {
         // 实体名称（小写）
         entityName: 'wquser',
 
+        // 逻辑删除：列表只显示未删除的用户，删除时只设置删除标记
+        softDelete: true,
+
         // 排除的字段（不显示在表格和表单中）
         excludeFields: [
           'openid',          // 微信 OpenID（敏感信息）
@@ -185,7 +188,8 @@ export default function WqUserPage() {
         delete: true,       // 允许删除用户
         batchDelete: true,  // 允许批量删除
         selection: true,    // 显示复选框
-        export: false,      // 暂不开放导出
+        export: true,       // 按当前查询条件导出
+        import: true,       // CSV/NDJSON 批量导入
       }}
 
       // UI 配置
@@ -1,8 +1,14 @@
 import React from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
-import { Tag, InputNumber } from 'antd';
+import { Tag, InputNumber, message } from 'antd';
 import { ProFormText, ProFormDigit } from '@ant-design/pro-components';
 import RelationSelect from '@/components/GenericCrud/components/RelationSelect';
+import { syncOrderItems } from '@/services/order';
+import {
+  createOrderItemWithStock,
+  deleteOrderItemsWithStock,
+  updateOrderItemWithStock,
+} from '@/services/stock';
 
 /**
  * 订单明细列表组件
@@ -15,6 +21,15 @@ interface OrderItemListProps {
 }
 
 export default function OrderItemList({ orderId }: OrderItemListProps) {
+  // 明细变化后同步订单的 items JSON，失败时提示（明细本身已保存）
+  const handleSyncItems = async () => {
+    try {
+      await syncOrderItems(orderId);
+    } catch (error: any) {
+      message.error(error?.message || '同步订单明细失败');
+    }
+  };
+
   return (
     <GenericCrud
       rowKey="_id"
@@ -36,6 +51,22 @@ export default function OrderItemList({ orderId }: OrderItemListProps) {
           orderId: orderId,
         },
 
+        // 明细增删改与库存扣减/归还在同一个批量请求中完成，库存不足时不会写入明细
+        writeOperations: {
+          create: async (data: any) => {
+            await createOrderItemWithStock(data);
+            return true;
+          },
+          update: async (id: any, data: any) => {
+            await updateOrderItemWithStock(id, data);
+            return true;
+          },
+          delete: async (id: any) => {
+            await deleteOrderItemsWithStock(Array.isArray(id) ? id : [id]);
+            return true;
+          },
+        },
+
         // 关联实体配置
         relations: {
           // 商品ID字段关联到Product实体
@@ -246,9 +277,19 @@ export default function OrderItemList({ orderId }: OrderItemListProps) {
         },
       }}
 
-      // 回调函数
+      // 回调函数：明细变化后同步订单的 items JSON
       callbacks={{
-        onError: (error, operation) => {
+        onCreateSuccess: () => {
+          handleSyncItems();
+        },
+        onUpdateSuccess: () => {
+          handleSyncItems();
+        },
+        onDeleteSuccess: () => {
+          handleSyncItems();
+        },
+        onError: (error) => {
+          message.error(error?.message || '操作失败');
         },
       }}
     />
@@ -1,8 +1,10 @@
 import React, { useState } from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
-import { Tag, Descriptions, Drawer, Button } from 'antd';
+import { Tag, Descriptions, Drawer, Button, message } from 'antd';
 import { EyeOutlined } from '@ant-design/icons';
 import OrderItemList from './components/OrderItemList';
+import { generateOrderNo } from '@/utils/id';
+import { deleteOrdersWithStock, updateOrderWithStock } from '@/services/order';
 
 /**
  * 订单管理页面
@@ -42,6 +44,21 @@ export default function OrderPage() {
         // 实体名称（小写）
         entityName: 'order',
 
+        // 只查询表格展示的字段，不读取订单明细 JSON
+        fetch: true,
+
+        // 手动取消、删除订单时归还库存（已取消的订单不重复归还）
+        writeOperations: {
+          update: async (id: any, data: any) => {
+            await updateOrderWithStock(id, data);
+            return true;
+          },
+          delete: async (id: any) => {
+            await deleteOrdersWithStock(Array.isArray(id) ? id : [id]);
+            return true;
+          },
+        },
+
         // 排除的字段
         excludeFields: [],
 
@@ -138,6 +155,14 @@ export default function OrderPage() {
             ],
           },
 
+          // 订单明细（JSON 数组，由 order_item 表同步，通过"查看明细"维护）
+          items: {
+            label: '订单明细',
+            hideInTable: true,
+            hideInSearch: true,
+            hideInForm: true,
+          },
+
           // 订单备注
           remark: {
             label: '订单备注',
@@ -157,7 +182,7 @@ export default function OrderPage() {
         delete: true,
         batchDelete: true,
         selection: true,
-        export: false,
+        export: true,
       }}
 
       // UI 配置
@@ -185,11 +210,12 @@ export default function OrderPage() {
         },
       }}
 
-      // 表单默认值
-      data={{
+      // 表单默认值（每次新建生成新的订单编号）
+      data={() => ({
+        orderNo: generateOrderNo('O'),
         status: 0, // 默认状态为待付款
         totalAmount: 0,
-      }}
+      })}
 
       // 回调函数
       callbacks={{
@@ -200,6 +226,7 @@ export default function OrderPage() {
         onDeleteSuccess: () => {
         },
         onError: (error, operation) => {
+          message.error(error?.message || '操作失败');
         },
       }}
 
@@ -2,6 +2,9 @@ import React from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
 import { Image, Tag } from 'antd';
 import FileUpload from '@/components/FileUpload';
+import RebuildCountersButton from '@/components/RebuildCountersButton';
+import { rebuildProductCounters } from '@/services/counters';
+import { invalidateCatalogIndex, searchCatalogIds, updateCatalogIndex } from '@/services/catalogSearch';
 
 /**
  * 商品管理页面
@@ -28,6 +31,18 @@ export default function ProductPage() {
         // 实体名称（小写）
         entityName: 'product',
 
+        // 销量、评分等统计字段会被其他业务并发更新，编辑时只提交修改过的字段
+        partialUpdate: true,
+
+        // 只查询表格展示的字段，不读取商品描述等大文本
+        fetch: true,
+
+        // 名称查询走关键词检索索引（与模糊查询结果一致，索引不可用时退回模糊查询）
+        keywordSearch: {
+          field: 'name',
+          search: (keyword: string) => searchCatalogIds('product', keyword),
+        },
+
         // 排除的字段
         excludeFields: [],
 
@@ -87,6 +102,7 @@ export default function ProductPage() {
             label: '商品描述',
             valueType: 'textarea',
             hideInSearch: true,
+            hideInTable: true, // 大文本字段，列表中不展示
             fieldProps: {
               rows: 4,
             },
@@ -191,6 +207,7 @@ export default function ProductPage() {
         batchDelete: true,
         selection: true,
         export: false,
+        import: true, // CSV/NDJSON 批量导入
       }}
 
       // UI 配置
@@ -227,13 +244,24 @@ export default function ProductPage() {
         reviewCount: 0,
       }}
 
-      // 回调函数
+      // 工具栏：从源数据重新统计冗余计数字段
+      renderToolbarExtra={({ reload }) => (
+        <RebuildCountersButton rebuild={rebuildProductCounters} onFinish={reload} />
+      )}
+
+      // 回调函数：数据变化后更新关键词检索索引
       callbacks={{
         onCreateSuccess: () => {
+          invalidateCatalogIndex('product');
         },
-        onUpdateSuccess: () => {
+        onUpdateSuccess: (data, record) => {
+          updateCatalogIndex('product', { ...data, _id: record?._id });
         },
         onDeleteSuccess: () => {
+          invalidateCatalogIndex('product');
+        },
+        onImportSuccess: () => {
+          invalidateCatalogIndex('product');
         },
         onError: (error, operation) => {
         },
@@ -1,6 +1,7 @@
 import React from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
-import { Tag } from 'antd';
+import { InputNumber, Tag } from 'antd';
+import { invalidateCouponIndex } from '@/services/couponPricing';
 
 /**
  * 服务优惠券管理页面
@@ -23,6 +24,9 @@ export default function ServiceCouponPage() {
         entityClassName: 'ServiceCoupon',
         entityName: 'servicecoupon',
 
+        // 领券时会并发修改已领取数量等字段，编辑时只提交修改过的字段
+        partialUpdate: true,
+
         // 排除的字段
         excludeFields: [
           'userServiceCoupons', // 关联对象
@@ -100,6 +104,27 @@ export default function ServiceCouponPage() {
             fieldProps: {
               min: 1,
             },
+            // 编辑时总发行量不能小于已领取数量，避免超发
+            renderFormItem: (props: any) => (
+              <InputNumber
+                value={props.value}
+                onChange={props.onChange}
+                min={Math.max(1, props.record?.receivedCount || 0)}
+                precision={0}
+                style={{ width: '100%' }}
+              />
+            ),
+            renderTable: (_: any, record: any) => {
+              const remaining = (record.totalCount || 0) - (record.receivedCount || 0);
+              return (
+                <span>
+                  {record.totalCount}
+                  <Tag color={remaining > 0 ? 'green' : 'red'} style={{ marginLeft: 8 }}>
+                    剩余 {Math.max(0, remaining)}
+                  </Tag>
+                </span>
+              );
+            },
           },
 
           // 已领取数量
@@ -198,13 +223,16 @@ export default function ServiceCouponPage() {
         
       }}
 
-      // 回调函数
+      // 回调函数：优惠券变化后清除适用索引
       callbacks={{
         onCreateSuccess: () => {
+          invalidateCouponIndex();
         },
         onUpdateSuccess: () => {
+          invalidateCouponIndex();
         },
         onDeleteSuccess: () => {
+          invalidateCouponIndex();
         },
         onError: (error, operation) => {
         },
@@ -2,6 +2,9 @@ import React from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
 import { Image, Tag } from 'antd';
 import FileUpload from '@/components/FileUpload';
+import RebuildCountersButton from '@/components/RebuildCountersButton';
+import { rebuildServiceCounters } from '@/services/counters';
+import { invalidateCatalogIndex, searchCatalogIds, updateCatalogIndex } from '@/services/catalogSearch';
 
 /**
  * 上门服务管理页面
@@ -24,6 +27,18 @@ export default function ServicePage() {
         entityClassName: 'WqService',
         entityName: 'wqservice',
 
+        // 销量、评分等统计字段会被其他业务并发更新，编辑时只提交修改过的字段
+        partialUpdate: true,
+
+        // 只查询表格展示的字段，不读取服务描述、服务须知等大文本
+        fetch: true,
+
+        // 名称查询走关键词检索索引（与模糊查询结果一致，索引不可用时退回模糊查询）
+        keywordSearch: {
+          field: 'name',
+          search: (keyword: string) => searchCatalogIds('wqservice', keyword),
+        },
+
         // 排除的字段
         excludeFields: ['serialVersionUID'],
 
@@ -137,6 +152,7 @@ export default function ServicePage() {
             label: '服务描述',
             valueType: 'textarea',
             hideInSearch: true,
+            hideInTable: true, // 大文本字段，列表中不展示
             fieldProps: {
               rows: 4,
             },
@@ -168,6 +184,7 @@ export default function ServicePage() {
             label: '服务须知',
             valueType: 'textarea',
             hideInSearch: true,
+            hideInTable: true, // 大文本字段，列表中不展示
             fieldProps: {
               rows: 3,
             },
@@ -239,13 +256,21 @@ export default function ServicePage() {
         reviewCount: 0,
       }}
 
-      // 回调函数
+      // 工具栏：从源数据重新统计冗余计数字段
+      renderToolbarExtra={({ reload }) => (
+        <RebuildCountersButton rebuild={rebuildServiceCounters} onFinish={reload} />
+      )}
+
+      // 回调函数：数据变化后更新关键词检索索引
       callbacks={{
         onCreateSuccess: () => {
+          invalidateCatalogIndex('wqservice');
         },
-        onUpdateSuccess: () => {
+        onUpdateSuccess: (data, record) => {
+          updateCatalogIndex('wqservice', { ...data, _id: record?._id });
         },
         onDeleteSuccess: () => {
+          invalidateCatalogIndex('wqservice');
         },
         onError: (error, operation) => {
         },
@@ -1,7 +1,19 @@
-import React from 'react';
+import React, { useState } from 'react';
 import { GenericCrud } from '@/components/GenericCrud';
-import { Image, Tag } from 'antd';
+import { Button, Image, Popconfirm, Select, Space, Tag, message } from 'antd';
+import { DeleteOutlined, SendOutlined } from '@ant-design/icons';
 import FileUpload from '@/components/FileUpload';
+import { createCoordinateFields, createLocationField } from '@/components/MapPicker/locationField';
+import { generateOrderNo } from '@/utils/id';
+import { SERVICE_ORDER_STATUS, ServiceOrderStatusEnum } from '@/constants';
+import { clearSlotOccupancy, normalizeTimeSlot, syncSlotOccupancy } from '@/services/slot';
+import { recordOrderAddress } from '@/services/addressBook';
+import { saveServiceOrder } from '@/services/serviceOrder';
+import DispatchModal from './order/components/DispatchModal';
+import TimeSlotPicker from './order/components/TimeSlotPicker';
+import CouponSelect from './order/components/CouponSelect';
+import AddressBookSelect from './order/components/AddressBookSelect';
+import TransitionButton from './order/components/TransitionButton';
 
 /**
  * 服务订单管理页面
@@ -12,9 +24,30 @@ import FileUpload from '@/components/FileUpload';
  * - 支持订单状态管理
  * - 支持订单查询和筛选
  * - 支持价格信息展示
+ * - 支持待派单订单派单给空闲服务人员
+ * - 预约时段按服务容量展示剩余名额
+ * - 支持按状态机批量修改订单状态
+ * - 自动选择最优优惠券并计算实付金额
+ * - 服务地址地图选点，记录经纬度用于就近派单
+ * - 选择用户后自动填入默认地址，也可从地址簿选择
  */
+
+// 后台新建订单可选的初始状态
+const INITIAL_STATUSES = [ServiceOrderStatusEnum.PENDING, ServiceOrderStatusEnum.PAID];
+
+// 服务地址地图选点（同时填写经纬度和省市区）
+const serviceLocationField = createLocationField({
+  placeholder: '请点击选择服务地址',
+  modalTitle: '选择服务地址',
+  fillRegion: true,
+});
+
 export default function ServiceOrderPage() {
+  // 派单弹窗
+  const [dispatchOrder, setDispatchOrder] = useState<{ record: any; reload: () => void } | null>(null);
+
   return (
+    <>
     <GenericCrud
       rowKey="_id"
       headerTitle="服务订单管理"
@@ -24,6 +57,18 @@ export default function ServiceOrderPage() {
         entityClassName: 'ServiceOrder',
         entityName: 'serviceorder',
 
+        // 新增、改约前重新校验时段容量
+        writeOperations: {
+          create: async (data: any) => {
+            await saveServiceOrder(data);
+            return true;
+          },
+          update: async (id: any, data: any) => {
+            await saveServiceOrder(data, id);
+            return true;
+          },
+        },
+
         // 排除的字段
         excludeFields: [
         
@@ -83,29 +128,42 @@ export default function ServiceOrderPage() {
             hideInForm: false,  // 允许查看，但通常是自动填充的
           },
  
-          // 服务人员ID
+          // 订单状态：新建时只能选择初始状态，之后只能通过派单和批量修改状态流转
+          status: {
+            label: '订单状态',
+            required: true,
+            renderFormItem: (props: any) =>
+              props.mode === 'update' ? (
+                <Tag>{SERVICE_ORDER_STATUS[props.value as keyof typeof SERVICE_ORDER_STATUS] ?? '-'}</Tag>
+              ) : (
+                <Select
+                  value={props.value}
+                  onChange={props.onChange}
+                  options={INITIAL_STATUSES.map((status) => ({
+                    value: status,
+                    label: SERVICE_ORDER_STATUS[status as keyof typeof SERVICE_ORDER_STATUS],
+                  }))}
+                />
+              ),
+          },
+
+          // 服务人员ID（只通过派单指定）
           providerId: {
             label: '服务人员',
-            hideInForm: false,  // 允许选择
-            required: false,   // 非必填，派单时再指定
-            // ⭐ 自动填充配置：选择服务人员后自动填充相关字段
-            autoFill: {
-              providerName: 'name',    // 服务人员姓名 <- name
-              providerPhone: 'phone',  // 服务人员电话 <- phone
-            },
+            hideInForm: true,
           },
 
           // 服务人员姓名（冗余）
           providerName: {
             label: '服务人员姓名',
-            hideInForm: false,  // 允许查看
+            hideInForm: true,
             hideInSearch: true,
           },
 
           // 服务人员电话（冗余）
           providerPhone: {
             label: '服务人员电话',
-            hideInForm: false,  // 允许查看
+            hideInForm: true,
             hideInSearch: true,
           },
 
@@ -123,6 +181,16 @@ export default function ServiceOrderPage() {
             label: '预约时间段',
             hideInForm: false,  // 创建时需要填写
             required: true,
+            // 按所选服务和日期展示各时段剩余容量
+            renderFormItem: (props: any) => (
+              <TimeSlotPicker
+                value={props.value}
+                onChange={props.onChange}
+                form={props.form}
+                record={props.record}
+              />
+            ),
+            renderTable: (text: any) => normalizeTimeSlot(text) || '-',
           },
 
           // 联系人姓名
@@ -138,6 +206,22 @@ export default function ServiceOrderPage() {
             hideInForm: false,  // 创建时需要填写
             required: true,
           }, 
+
+          // 服务地址（从地址簿选择或地图选点）
+          detailAddress: {
+            label: '详细地址',
+            required: true,
+            renderFormItem: (props: any) => (
+              <Space direction="vertical" style={{ width: '100%' }}>
+                <AddressBookSelect form={props.form} autoFill={props.mode !== 'update'} />
+                {serviceLocationField.renderFormItem(props)}
+              </Space>
+            ),
+          },
+
+          // 经纬度（派单时按距离查找服务人员）
+          ...createCoordinateFields(),
+
           // 原价
           originalPrice: {
             label: '原价（元）',
@@ -162,6 +246,20 @@ export default function ServiceOrderPage() {
             },
           },
 
+          // 优惠券：列出可用优惠券，默认选择优惠金额最大的，并计算优惠金额和实付金额
+          couponId: {
+            label: '优惠券',
+            hideInForm: false,
+            renderFormItem: (props: any) => (
+              <CouponSelect
+                value={props.value}
+                onChange={props.onChange}
+                form={props.form}
+                record={props.mode === 'update' ? props.record : undefined}
+              />
+            ),
+          },
+
           // 优惠金额
           discountAmount: {
             label: '优惠金额（元）',
@@ -254,7 +352,7 @@ export default function ServiceOrderPage() {
         delete: true,    // 允许删除订单
         batchDelete: true, // 允许批量删除
         selection: true,
-        export: false,
+        export: true,    // 按当前查询条件导出
       }}
 
       // UI 配置
@@ -282,21 +380,91 @@ export default function ServiceOrderPage() {
         },
       }}
 
-      // 表单默认值
-      data={{ 
-      }}
+      // 表单默认值（每次新建生成新的订单编号）
+      data={() => ({
+        orderNo: generateOrderNo('SO'),
+        status: ServiceOrderStatusEnum.PENDING,
+      })}
 
       // 回调函数
       callbacks={{
-        onCreateSuccess: () => {
+        // 下单、改约、取消后增量更新时段占用
+        onCreateSuccess: (data) => {
+          syncSlotOccupancy(undefined, data);
+          // 累计地址簿中对应地址的使用次数
+          recordOrderAddress(data).catch(() => {});
         },
-        onUpdateSuccess: () => {
+        onUpdateSuccess: (data, record) => {
+          syncSlotOccupancy(record, { ...record, ...data });
         },
         onDeleteSuccess: () => {
+          clearSlotOccupancy();
         },
         onError: (error, operation) => {
+          if (operation === 'create' || operation === 'update') {
+            message.error(error?.message || (operation === 'create' ? '创建失败' : '更新失败'));
+          }
         },
       }}
+
+      // 工具栏：批量修改状态
+      renderToolbarExtra={({ selectedRows, reload }) => (
+        <TransitionButton selectedRows={selectedRows} onFinish={reload} />
+      )}
+
+      // 自定义操作列按钮
+      renderItemActions={(record, { handleEdit, handleDelete, reload }) => {
+        return (
+          <div style={{ display: 'flex', gap: '8px', alignItems: 'center' }}>
+            {/* 派单按钮（仅待派单订单） */}
+            {Number(record.status) === ServiceOrderStatusEnum.PAID && (
+              <Button
+                type="link"
+                icon={<SendOutlined />}
+                onClick={() => setDispatchOrder({ record, reload })}
+                style={{ padding: '4px 8px' }}
+              >
+                派单
+              </Button>
+            )}
+
+            {/* 编辑按钮 */}
+            <Button
+              type="link"
+              onClick={() => handleEdit()}
+              style={{ padding: '4px 8px' }}
+            >
+              编辑
+            </Button>
+
+            {/* 删除按钮 */}
+            <Popconfirm
+              title="确认删除"
+              description="确定要删除吗？此操作无法撤销。"
+              onConfirm={() => handleDelete()}
+              okText="确定"
+              cancelText="取消"
+              okButtonProps={{ danger: true }}
+            >
+              <Button type="link" danger icon={<DeleteOutlined />} style={{ padding: '4px 8px' }}>
+                删除
+              </Button>
+            </Popconfirm>
+          </div>
+        );
+      }}
+    />
+
+    {/* 派单弹窗 */}
+    <DispatchModal
+      open={!!dispatchOrder}
+      order={dispatchOrder?.record}
+      onCancel={() => setDispatchOrder(null)}
+      onSuccess={() => {
+        dispatchOrder?.reload();
+        setDispatchOrder(null);
+      }}
     />
+    </>
   );
 }
@@ -0,0 +1,86 @@
+import React, { useEffect, useState } from 'react';
+import { Form, Select } from 'antd';
+import { getAddressBook, getDefaultAddress } from '@/services/addressBook';
+import type { AddressRecord } from '@/services/addressBook';
+
+/**
+ * 从地址簿选择服务地址
+ * 选择用户后列出该用户的收货地址（来自地址簿缓存），新建订单且未填写地址时自动填入默认地址
+ */
+interface AddressBookSelectProps {
+  form: any;
+  // 是否自动填入默认地址（新建订单时）
+  autoFill?: boolean;
+}
+
+export default function AddressBookSelect({ form, autoFill = false }: AddressBookSelectProps) {
+  const userId = Form.useWatch('userId', form);
+  const [loading, setLoading] = useState(false);
+  const [addresses, setAddresses] = useState<AddressRecord[]>([]);
+
+  const fillAddress = (address: AddressRecord) => {
+    form.setFieldsValue({
+      contactName: address.receiverName,
+      contactPhone: address.receiverPhone,
+      province: address.province,
+      city: address.city,
+      district: address.district,
+      detailAddress: address.detailAddress,
+      longitude: address.longitude,
+      latitude: address.latitude,
+    });
+  };
+
+  useEffect(() => {
+    if (!userId) {
+      setAddresses([]);
+      return;
+    }
+
+    let cancelled = false;
+    setLoading(true);
+    Promise.all([getAddressBook(userId), autoFill ? getDefaultAddress(userId) : null])
+      .then(([list, defaultAddress]) => {
+        if (cancelled) return;
+        setAddresses(list);
+        if (defaultAddress && !form.getFieldValue('detailAddress')) {
+          fillAddress(defaultAddress);
+        }
+      })
+      .catch(() => {
+        if (!cancelled) setAddresses([]);
+      })
+      .finally(() => {
+        if (!cancelled) setLoading(false);
+      });
+
+    return () => {
+      cancelled = true;
+    };
+  }, [userId]);
+
+  return (
+    <Select
+      value={null}
+      onChange={(id) => {
+        const address = addresses.find((item) => item._id === id);
+        if (address) fillAddress(address);
+      }}
+      options={addresses.map((address) => ({
+        value: address._id,
+        label: `${Number(address.isDefault) === 1 ? '[默认] ' : ''}${address.receiverName} ${address.receiverPhone} ${[
+          address.province,
+          address.city,
+          address.district,
+          address.detailAddress,
+        ]
+          .filter(Boolean)
+          .join('')}`,
+      }))}
+      loading={loading}
+      disabled={!userId}
+      placeholder={userId ? (addresses.length > 0 ? '从地址簿选择' : '该用户暂无收货地址') : '请先选择用户'}
+      style={{ width: '100%' }}
+    />
+  );
+}
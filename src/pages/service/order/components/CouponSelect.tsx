@@ -0,0 +1,118 @@
+import React, { useEffect, useRef, useState } from 'react';
+import { Form, Select } from 'antd';
+import { priceServiceOrder } from '@/services/couponPricing';
+import type { CouponQuote } from '@/services/couponPricing';
+
+/**
+ * 优惠券选择
+ * 根据表单中已选的服务、用户和原价列出该用户领取且未使用的可用优惠券，新建订单时自动选择优惠金额最大的一张，
+ * 选择变化后同步填写优惠金额和实付金额
+ */
+interface CouponSelectProps {
+  value?: string;
+  onChange?: (value?: string) => void;
+  form: any;
+  // 编辑时的原订单
+  record?: any;
+}
+
+export default function CouponSelect({ value, onChange, form, record }: CouponSelectProps) {
+  const serviceId = Form.useWatch('serviceId', form);
+  const userId = Form.useWatch('userId', form);
+  const originalPrice = Form.useWatch('originalPrice', form);
+  const [loading, setLoading] = useState(false);
+  const [candidates, setCandidates] = useState<CouponQuote[]>([]);
+
+  // 最新选中的优惠券（计价请求返回时使用）
+  const valueRef = useRef(value);
+  valueRef.current = value;
+  // 编辑订单时首次加载只列出可用优惠券，不改动原订单的优惠券和金额
+  const keepOriginalRef = useRef(!!record);
+
+  const applyPrice = (couponId: string | undefined, quotes: CouponQuote[]) => {
+    const price = Number(originalPrice || 0);
+    const discountAmount = quotes.find((quote) => quote.coupon._id === couponId)?.discountAmount || 0;
+    form.setFieldsValue({
+      discountAmount,
+      finalPrice: Math.round((price - discountAmount) * 100) / 100,
+    });
+  };
+
+  useEffect(() => {
+    if (!serviceId) {
+      setCandidates([]);
+      return;
+    }
+
+    let cancelled = false;
+    setLoading(true);
+    priceServiceOrder({
+      serviceId,
+      userId,
+      originalPrice: originalPrice !== undefined && originalPrice !== null ? Number(originalPrice) : undefined,
+      couponId: valueRef.current || undefined,
+      orderId: record?._id,
+    })
+      .then((price) => {
+        if (cancelled) return;
+        setCandidates(price.candidates);
+        if (keepOriginalRef.current) {
+          keepOriginalRef.current = false;
+          return;
+        }
+        // 新建订单且未手动选择时使用最优优惠券；已选的优惠券不再可用时清空
+        const couponId = valueRef.current
+          ? price.coupon?._id
+          : !record
+          ? price.candidates[0]?.coupon._id
+          : undefined;
+        if (couponId !== valueRef.current) {
+          onChange?.(couponId);
+        }
+        applyPrice(couponId, price.candidates);
+      })
+      .catch(() => {
+        if (!cancelled) setCandidates([]);
+      })
+      .finally(() => {
+        if (!cancelled) setLoading(false);
+      });
+
+    return () => {
+      cancelled = true;
+    };
+  }, [serviceId, userId, originalPrice]);
+
+  const handleChange = (couponId?: string) => {
+    onChange?.(couponId);
+    applyPrice(couponId, candidates);
+  };
+
+  const options = candidates.map(({ coupon, discountAmount }) => ({
+    value: coupon._id,
+    label: `${coupon.name}（优惠 ¥${discountAmount.toFixed(2)}）`,
+  }));
+  if (value && !options.some((option) => option.value === value)) {
+    options.unshift({ value, label: '原订单优惠券（当前不可用）' });
+  }
+
+  return (
+    <Select
+      value={value || undefined}
+      onChange={handleChange}
+      options={options}
+      loading={loading}
+      allowClear
+      placeholder={
+        !serviceId
+          ? '请先选择服务项目'
+          : !userId
+          ? '请先选择用户'
+          : candidates.length > 0
+          ? '请选择优惠券'
+          : '该用户暂无可用优惠券'
+      }
+      style={{ width: '100%' }}
+    />
+  );
+}
@@ -0,0 +1,129 @@
+import React, { useEffect, useState } from 'react';
+import { Button, Modal, Rate, Table, Tag, message } from 'antd';
+import { assignProvider, findAvailableProviders } from '@/services/dispatch';
+import type { ProviderCandidate } from '@/services/dispatch';
+import { getEntitiesByIds, getEntityById } from '@/services/genericEntity';
+import { formatDistance, parseGeoPoint } from '@/utils/geo';
+
+/**
+ * 派单弹窗
+ * 列出可提供该服务的空闲服务人员（订单有坐标时按距离由近到远，否则按评分、工作量排序），选择后完成派单；
+ * 优先列出下单用户所在社区的服务人员，本社区没有空闲人员时列出全部
+ *
+ * @param order - 待派单的服务订单
+ */
+interface DispatchModalProps {
+  open: boolean;
+  order: any;
+  onCancel: () => void;
+  onSuccess: () => void;
+}
+
+export default function DispatchModal({ open, order, onCancel, onSuccess }: DispatchModalProps) {
+  const [loading, setLoading] = useState(false);
+  const [assigningId, setAssigningId] = useState<string>('');
+  const [providers, setProviders] = useState<ProviderCandidate[]>([]);
+
+  useEffect(() => {
+    if (!open || !order) return;
+
+    const loadProviders = async () => {
+      try {
+        setLoading(true);
+        // 服务分类用于没有人员登记该服务时的兜底匹配
+        const [service, user] = await Promise.all([
+          order.serviceId ? getEntityById<any>('wqservice', order.serviceId) : null,
+          order.userId
+            ? getEntitiesByIds<any>('wquser', [order.userId], ['_id', 'communityId']).then(([record]) => record)
+            : null,
+        ]);
+        const params = {
+          serviceId: order.serviceId,
+          category: service?.category,
+          location: parseGeoPoint(order.longitude, order.latitude),
+        };
+        let candidates = user?.communityId
+          ? await findAvailableProviders({ ...params, communityId: user.communityId })
+          : [];
+        if (candidates.length === 0) {
+          candidates = await findAvailableProviders(params);
+        }
+        setProviders(candidates);
+      } catch (error) {
+        message.error('加载服务人员失败');
+      } finally {
+        setLoading(false);
+      }
+    };
+
+    loadProviders();
+  }, [open, order]);
+
+  const handleAssign = async (provider: ProviderCandidate) => {
+    try {
+      setAssigningId(provider._id);
+      await assignProvider(order._id, provider._id);
+      message.success(`已派单给 ${provider.name}`);
+      onSuccess();
+    } catch (error: any) {
+      message.error(error?.message || '派单失败');
+      // 刷新候选列表，去掉已被占用的人员
+      setProviders((prev) => prev.filter((item) => item._id !== provider._id));
+    } finally {
+      setAssigningId('');
+    }
+  };
+
+  return (
+    <Modal
+      title={`派单 - ${order?.serviceName || order?.orderNo || ''}`}
+      open={open}
+      onCancel={onCancel}
+      footer={null}
+      width={800}
+      destroyOnClose
+    >
+      <Table<ProviderCandidate>
+        rowKey="_id"
+        size="small"
+        loading={loading}
+        dataSource={providers}
+        pagination={false}
+        locale={{ emptyText: '暂无空闲的服务人员' }}
+        columns={[
+          { title: '姓名', dataIndex: 'name' },
+          { title: '手机号', dataIndex: 'phone' },
+          {
+            title: '距离',
+            dataIndex: 'distance',
+            render: (value?: number) => formatDistance(value),
+          },
+          {
+            title: '评分',
+            dataIndex: 'rating',
+            render: (value: number) => <Rate disabled allowHalf value={value} />,
+          },
+          {
+            title: '完成订单数',
+            dataIndex: 'orderCount',
+            render: (value: number) => <Tag color="blue">{value}</Tag>,
+          },
+          {
+            title: '操作',
+            key: 'action',
+            render: (_: any, provider) => (
+              <Button
+                type="link"
+                loading={assigningId === provider._id}
+                disabled={!!assigningId && assigningId !== provider._id}
+                onClick={() => handleAssign(provider)}
+              >
+                派单
+              </Button>
+            ),
+          },
+        ]}
+      />
+    </Modal>
+  );
+}
@@ -0,0 +1,78 @@
+import React, { useEffect, useState } from 'react';
+import { Form, Select } from 'antd';
+import dayjs from 'dayjs';
+import { coveredSlots, getSlotAvailability, normalizeTimeSlot, TIME_SLOTS } from '@/services/slot';
+import type { SlotAvailability } from '@/services/slot';
+
+/**
+ * 预约时段选择
+ * 根据表单中已选的服务和预约日期展示各时段剩余容量，已约满的时段不可选（提交时还会重新校验）
+ */
+interface TimeSlotPickerProps {
+  value?: string;
+  onChange?: (value: string) => void;
+  form: any;
+  // 编辑时的原订单，原订单占用的时段始终可选
+  record?: any;
+}
+
+export default function TimeSlotPicker({ value, onChange, form, record }: TimeSlotPickerProps) {
+  const serviceId = Form.useWatch('serviceId', form);
+  const bookingDate = Form.useWatch('bookingDate', form);
+  const [loading, setLoading] = useState(false);
+  const [slots, setSlots] = useState<SlotAvailability[]>([]);
+
+  useEffect(() => {
+    if (!serviceId || !bookingDate) {
+      setSlots([]);
+      return;
+    }
+
+    let cancelled = false;
+    setLoading(true);
+    // 一次加载所选日期起 7 天的容量，切换日期时多数情况下直接命中占用表
+    getSlotAvailability(serviceId, bookingDate, 7)
+      .then((days) => {
+        if (!cancelled) setSlots(days[0]?.slots || []);
+      })
+      .catch(() => {
+        if (!cancelled) setSlots([]);
+      })
+      .finally(() => {
+        if (!cancelled) setLoading(false);
+      });
+
+    return () => {
+      cancelled = true;
+    };
+  }, [serviceId, bookingDate]);
+
+  const isOwnSlot = (timeSlot: string) =>
+    !!record &&
+    record.serviceId === serviceId &&
+    dayjs(record.bookingDate).isSame(dayjs(bookingDate), 'day') &&
+    coveredSlots(record.timeSlot).includes(timeSlot);
+
+  const options = (slots.length > 0 ? slots : TIME_SLOTS.map((timeSlot) => ({ timeSlot } as SlotAvailability))).map(
+    (slot) => {
+      const known = slot.capacity !== undefined;
+      const full = known && slot.available <= 0 && !isOwnSlot(slot.timeSlot);
+      return {
+        value: slot.timeSlot,
+        label: known ? `${slot.timeSlot}（剩余 ${slot.available}/${slot.capacity}）` : slot.timeSlot,
+        disabled: full,
+      };
+    },
+  );
+
+  return (
+    <Select
+      value={value ? normalizeTimeSlot(value) : undefined}
+      onChange={onChange}
+      options={options}
+      loading={loading}
+      placeholder={serviceId && bookingDate ? '请选择预约时间段' : '请先选择服务项目和预约日期'}
+      style={{ width: '100%' }}
+    />
+  );
+}
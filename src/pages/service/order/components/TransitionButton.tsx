@@ -0,0 +1,68 @@
+import React, { useState } from 'react';
+import { Button, Dropdown, Modal, message } from 'antd';
+import { DownOutlined } from '@ant-design/icons';
+import { getNextStatuses, transitionServiceOrders } from '@/services/serviceOrder';
+import { SERVICE_ORDER_STATUS } from '@/constants';
+
+/**
+ * 批量修改订单状态
+ * 只列出所选订单可以流转到的状态，不能流转的订单会被跳过
+ */
+interface TransitionButtonProps {
+  selectedRows: any[];
+  onFinish: () => void;
+}
+
+export default function TransitionButton({ selectedRows, onFinish }: TransitionButtonProps) {
+  const [loading, setLoading] = useState(false);
+
+  if (selectedRows.length === 0) return null;
+
+  // 所选订单可以流转到的状态（并集）
+  const targets = Array.from(
+    new Set(selectedRows.flatMap((row) => getNextStatuses(Number(row.status)))),
+  ).sort((a, b) => a - b);
+
+  const handleTransition = (to: number) => {
+    const label = SERVICE_ORDER_STATUS[to as keyof typeof SERVICE_ORDER_STATUS];
+    Modal.confirm({
+      title: '批量修改状态',
+      content: `确定将选中的 ${selectedRows.length} 个订单改为「${label}」吗？`,
+      okText: '确定',
+      cancelText: '取消',
+      onOk: async () => {
+        try {
+          setLoading(true);
+          const { succeeded, skipped } = await transitionServiceOrders(selectedRows, to);
+          if (skipped.length > 0) {
+            message.warning(`已更新 ${succeeded.length} 个订单，跳过 ${skipped.length} 个（${skipped[0].reason}）`);
+          } else {
+            message.success(`已更新 ${succeeded.length} 个订单`);
+          }
+          onFinish();
+        } catch (error: any) {
+          message.error(error?.message || '修改状态失败');
+        } finally {
+          setLoading(false);
+        }
+      },
+    });
+  };
+
+  return (
+    <Dropdown
+      disabled={targets.length === 0}
+      menu={{
+        items: targets.map((status) => ({
+          key: String(status),
+          label: SERVICE_ORDER_STATUS[status as keyof typeof SERVICE_ORDER_STATUS],
+        })),
+        onClick: ({ key }) => handleTransition(Number(key)),
+      }}
+    >
+      <Button loading={loading} size="large">
+        批量修改状态 ({selectedRows.length}) <DownOutlined />
+      </Button>
+    </Dropdown>
+  );
+}
@@ -3,7 +3,11 @@ import { GenericCrud } from '@/components/GenericCrud';
 import { Image, Drawer, Button } from 'antd';
 import { UnorderedListOutlined } from '@ant-design/icons';
 import FileUpload from '@/components/FileUpload';
+import { createCoordinateFields, createLocationField } from '@/components/MapPicker/locationField';
 import ProviderOrderList from './provider/components/ProviderOrderList';
+import RebuildCountersButton from '@/components/RebuildCountersButton';
+import { rebuildProviderCounters } from '@/services/counters';
+import { invalidateProviderIndex, updateProviderInIndex } from '@/services/dispatch';
 
 /**
  * 服务人员管理页面
@@ -14,6 +18,7 @@ import ProviderOrderList from './provider/components/ProviderOrderList';
  * - 支持服务人员信息管理
  * - 支持技能认证管理
  * - 支持评价和订单统计
+ * - 常驻地址地图选点，记录经纬度用于就近派单
  */
 export default function ServiceProviderPage() {
   // 控制订单列表抽屉的显示
@@ -39,6 +44,9 @@ export default function ServiceProviderPage() {
         entityClassName: 'ServiceProvider',
         entityName: 'serviceprovider',
 
+        // 销量、评分等统计字段会被其他业务并发更新，编辑时只提交修改过的字段
+        partialUpdate: true,
+
         // 排除的字段
         excludeFields: [
           // 'idCard',           // 身份证号（敏感信息）
@@ -213,6 +221,19 @@ export default function ServiceProviderPage() {
               max: 50,
             },
           },
+
+          // 常驻地址（地图选点，同时填写经纬度）
+          address: {
+            label: '常驻地址',
+            hideInSearch: true,
+            ...createLocationField({
+              placeholder: '请点击选择常驻地址',
+              modalTitle: '选择常驻地址',
+            }),
+          },
+
+          // 经纬度（派单时按距离查找服务人员）
+          ...createCoordinateFields(),
  
        
         },
@@ -263,13 +284,23 @@ export default function ServiceProviderPage() {
         rating: 0,
       }}
 
+      // 工具栏：从源数据重新统计冗余计数字段
+      renderToolbarExtra={({ reload }) => (
+        <RebuildCountersButton rebuild={rebuildProviderCounters} onFinish={reload} />
+      )}
+
       // 回调函数
       callbacks={{
+        // 新增、删除后重新加载派单索引，修改状态或位置时增量更新
         onCreateSuccess: () => {
+          invalidateProviderIndex();
         },
-        onUpdateSuccess: () => {
+        onUpdateSuccess: (data, record) => {
+          const { status, longitude, latitude } = { ...record, ...data };
+          updateProviderInIndex(record?._id, { status, longitude, latitude });
         },
         onDeleteSuccess: () => {
+          invalidateProviderIndex();
         },
         onError: (error, operation) => {
         },
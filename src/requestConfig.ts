@@ -39,11 +39,61 @@ const refreshAccessToken = async (refreshToken: string) => {
   });
 };
 
-// 排除不需要 token 的请求路径（登录、刷新token、登出等）
+/**
+ * 刷新 accessToken（请求收到 401 时使用，也供不经过 request 的请求使用，如流式导出）
+ * 正在刷新时排队等待同一次刷新的结果；刷新失败时清除认证信息并跳转登录页
+ * @returns 新的 accessToken
+ */
+export const renewAccessToken = async (): Promise<string> => {
+  const refreshTokenValue = localStorage.getItem('refreshToken');
+
+  // 如果没有refreshToken，直接跳转登录页
+  if (!refreshTokenValue) {
+    clearAuthAndRedirect();
+    throw { message: '未登录或登录已过期' };
+  }
+
+  // 如果正在刷新token，将请求加入队列
+  if (isRefreshing) {
+    return new Promise((resolve, reject) => {
+      failedQueue.push({ resolve, reject });
+    });
+  }
+
+  // 开始刷新token
+  isRefreshing = true;
+
+  try {
+    // 调用刷新token接口
+    const res = await refreshAccessToken(refreshTokenValue);
+
+    if (res.code !== 200 || !res.data?.accessToken) {
+      throw new Error(res.message || 'Token刷新失败');
+    }
+
+    const newAccessToken = res.data.accessToken;
+
+    // 保存新的accessToken
+    localStorage.setItem('accessToken', newAccessToken);
+
+    // 处理队列中的请求
+    processQueue(null, newAccessToken);
+    return newAccessToken;
+  } catch (error: any) {
+    // 刷新失败，清除认证信息并跳转登录页
+    processQueue(error, null);
+    clearAuthAndRedirect();
+    throw error;
+  } finally {
+    isRefreshing = false;
+  }
+};
+
+// 排除不需要 token 的请求路径（登录、刷新token）
+// 登出需要带上 token，服务端才能吊销对应的令牌
 const EXCLUDED_PATHS = [
   '/api/admin/auth/login',    // 登录
   '/api/admin/auth/refresh',  // 刷新token
-  '/api/admin/auth/logout',   // 登出
 ];
 
 // 请求配置
@@ -76,67 +126,18 @@ export const requestConfig: RequestConfig = {
     async (response, options) => {
       const { status } = response;
 
-      // 处理401未授权错误
+      // 处理401未授权错误：刷新token后重新发送原始请求
       if (status === 401) {
-        const refreshTokenValue = localStorage.getItem('refreshToken');
-
-        // 如果没有refreshToken，直接跳转登录页
-        if (!refreshTokenValue) {
-          clearAuthAndRedirect();
-          return Promise.reject({ message: '未登录或登录已过期' });
-        }
-
-        // 如果正在刷新token，将请求加入队列
-        if (isRefreshing) {
-          return new Promise((resolve, reject) => {
-            failedQueue.push({ resolve, reject });
-          }).then(() => {
-            // 使用 umi 的 request 重新发送请求
-            return (globalThis as any).request(options.url, {
-              ...options,
-              headers: {
-                ...options.headers,
-                Authorization: `Bearer ${localStorage.getItem('accessToken')}`,
-              },
-            });
-          });
-        }
-
-        // 开始刷新token
-        isRefreshing = true;
-
-        try {
-          // 调用刷新token接口
-          const res = await refreshAccessToken(refreshTokenValue);
-
-          if (res.code !== 200 || !res.data?.accessToken) {
-            throw new Error(res.message || 'Token刷新失败');
-          }
-
-          const newAccessToken = res.data.accessToken;
-
-          // 保存新的accessToken
-          localStorage.setItem('accessToken', newAccessToken);
-
-          // 处理队列中的请求
-          processQueue(null, newAccessToken);
-
-          // 重新发送原始请求
-          return (globalThis as any).request(options.url, {
-            ...options,
-            headers: {
-              ...options.headers,
-              Authorization: `Bearer ${newAccessToken}`,
-            },
-          });
-        } catch (error: any) {
-          // 刷新失败，清除认证信息并跳转登录页
-          processQueue(error, null);
-          clearAuthAndRedirect();
-          return Promise.reject(error);
-        } finally {
-          isRefreshing = false;
-        }
+        const newAccessToken = await renewAccessToken();
+
+        // 使用 umi 的 request 重新发送请求
+        return (globalThis as any).request(options.url, {
+          ...options,
+          headers: {
+            ...options.headers,
+            Authorization: `Bearer ${newAccessToken}`,
+          },
+        });
       }
 
       return response;
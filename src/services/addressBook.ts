@@ -0,0 +1,368 @@
+import { batchEntities, isBatchConflict, queryEntity } from './genericEntity';
+import type { BatchOperation } from './genericEntity';
+import type { ImportHooks } from './import';
+import { generateId } from '@/utils/id';
+
+/**
+ * 用户地址簿
+ *
+ * 按用户缓存收货地址（默认地址在前，其余按使用次数排序），下单时取默认地址只查缓存；
+ * 设置默认地址在一个批量请求中完成：先按条件把该用户其他默认地址置为普通地址（一条 UPDATE ... WHERE user_id = ? AND is_default = 1），
+ * 再设置新的默认地址（按条件更新失败时改为先查出默认地址，再按ID逐条更新，仍在同一个批量请求中）；
+ * 使用次数在本地累计，合并成 $inc 批量提交，避免每次下单都更新同一行，页面关闭时用 keepalive 请求提交剩余次数
+ */
+
+/**
+ * 收货地址
+ */
+export interface AddressRecord {
+  _id: string;
+  userId: string;
+  receiverName: string;
+  receiverPhone: string;
+  province: string;
+  city: string;
+  district?: string;
+  detailAddress: string;
+  longitude?: number | string;
+  latitude?: number | string;
+  isDefault: number;
+  tag?: string | number;
+  usedCount?: number;
+}
+
+interface AddressBook {
+  addresses: AddressRecord[];
+  loadedAt: number;
+}
+
+const ENTITY = 'useraddress';
+
+// 地址簿缓存有效期
+const BOOK_TTL = 60 * 1000;
+// 最多缓存的用户数（超出时淘汰最早加载的）
+const MAX_BOOKS = 200;
+// 使用次数累计后提交的延迟
+const USAGE_FLUSH_DELAY = 2000;
+
+const ADDRESS_FIELDS = [
+  '_id',
+  'userId',
+  'receiverName',
+  'receiverPhone',
+  'province',
+  'city',
+  'district',
+  'detailAddress',
+  'longitude',
+  'latitude',
+  'isDefault',
+  'tag',
+  'usedCount',
+];
+
+const books = new Map<string, AddressBook>();
+const pendingBooks = new Map<string, Promise<AddressRecord[]>>();
+// 地址ID -> 尚未提交的使用次数
+const pendingUsage = new Map<string, number>();
+let usageTimer: ReturnType<typeof setTimeout> | null = null;
+// 服务端是否支持按条件更新（update 不传 id），按条件更新失败而按ID更新成功时记为不支持，之后直接按ID更新
+let conditionUpdateSupported = true;
+
+/**
+ * 排序规则：默认地址在前，其余按使用次数从多到少
+ */
+function sortAddresses(addresses: AddressRecord[]): AddressRecord[] {
+  return addresses.sort(
+    (a, b) =>
+      Number(b.isDefault) - Number(a.isDefault) || Number(b.usedCount || 0) - Number(a.usedCount || 0),
+  );
+}
+
+/**
+ * 查询用户的地址簿（默认地址在前），缓存有效期内不再请求
+ * 服务端按 (user_id, is_default) 索引查询
+ * @param force 是否跳过缓存
+ */
+export async function getAddressBook(userId: string, force: boolean = false): Promise<AddressRecord[]> {
+  const cached = books.get(userId);
+  if (!force && cached && Date.now() - cached.loadedAt < BOOK_TTL) {
+    return cached.addresses;
+  }
+
+  let pending = pendingBooks.get(userId);
+  if (!pending) {
+    pending = queryEntity<AddressRecord>(ENTITY, {
+      conditions: { userId },
+      fetch: ADDRESS_FIELDS,
+      countMode: 'none',
+      readOnly: true,
+    })
+      .then((result) => {
+        const addresses = sortAddresses(result.data);
+        books.delete(userId);
+        books.set(userId, { addresses, loadedAt: Date.now() });
+        if (books.size > MAX_BOOKS) {
+          books.delete(books.keys().next().value!);
+        }
+        return addresses;
+      })
+      .finally(() => {
+        pendingBooks.delete(userId);
+      });
+    pendingBooks.set(userId, pending);
+  }
+  return pending;
+}
+
+/**
+ * 用户的默认地址，没有时返回 null
+ */
+export async function getDefaultAddress(userId: string): Promise<AddressRecord | null> {
+  const addresses = await getAddressBook(userId);
+  return addresses[0] && Number(addresses[0].isDefault) === 1 ? addresses[0] : null;
+}
+
+/**
+ * 清除地址簿缓存
+ * @param userId 用户ID，不传时清除全部
+ */
+export function invalidateAddressBook(userId?: string): void {
+  if (userId) {
+    books.delete(userId);
+  } else {
+    books.clear();
+  }
+}
+
+/**
+ * 把用户的默认地址全部置为普通地址
+ * 服务端支持时按条件更新（不需要先查出地址ID），否则查出当前的默认地址按ID更新
+ */
+async function clearDefaultOperations(userId: string): Promise<BatchOperation[]> {
+  if (conditionUpdateSupported) {
+    return [
+      {
+        entity: ENTITY,
+        action: 'update',
+        conditions: { userId, isDefault: 1 },
+        data: { isDefault: 0 },
+      },
+    ];
+  }
+  const result = await queryEntity<AddressRecord>(ENTITY, {
+    conditions: { userId, isDefault: 1 },
+    fetch: ['_id'],
+    countMode: 'none',
+  });
+  return result.data.map((address) => ({
+    entity: ENTITY,
+    action: 'update' as const,
+    id: address._id,
+    data: { isDefault: 0 },
+    expect: { isDefault: 1 },
+  }));
+}
+
+/**
+ * 清除用户原来的默认地址并执行地址操作（同一个批量请求）
+ * 按条件更新的请求失败时改为按ID更新后重新提交
+ */
+async function submitWithDefault(userId: string, operations: BatchOperation[]): Promise<void> {
+  if (conditionUpdateSupported) {
+    try {
+      await batchEntities([...(await clearDefaultOperations(userId)), ...operations]);
+      return;
+    } catch (error) {
+      if (isBatchConflict(error)) {
+        throw error;
+      }
+      conditionUpdateSupported = false;
+      try {
+        await batchEntities([...(await clearDefaultOperations(userId)), ...operations]);
+      } catch (retryError) {
+        // 按ID更新也失败，不是服务端不支持按条件更新
+        conditionUpdateSupported = true;
+        throw retryError;
+      }
+      return;
+    }
+  }
+  await batchEntities([...(await clearDefaultOperations(userId)), ...operations]);
+}
+
+/**
+ * 设置默认地址
+ * 清除旧默认地址和设置新默认地址在同一个批量请求（同一事务）中执行
+ */
+export async function setDefaultAddress(userId: string, addressId: string): Promise<void> {
+  await submitWithDefault(userId, [
+    {
+      entity: ENTITY,
+      action: 'update',
+      id: addressId,
+      data: { isDefault: 1 },
+      expect: { userId },
+    },
+  ]);
+
+  const book = books.get(userId);
+  if (book) {
+    book.addresses.forEach((address) => {
+      address.isDefault = address._id === addressId ? 1 : 0;
+    });
+    sortAddresses(book.addresses);
+  }
+}
+
+/**
+ * 新增或修改地址
+ * 设为默认地址时在同一个批量请求中清除该用户原来的默认地址
+ * @param id 修改的地址ID，不传时新增
+ */
+export async function saveAddress(data: Record<string, any>, id?: string): Promise<void> {
+  const operation: BatchOperation = id
+    ? { entity: ENTITY, action: 'update', id, data }
+    : { entity: ENTITY, action: 'create', data: { _id: generateId(), ...data } };
+  if (Number(data.isDefault) === 1 && data.userId) {
+    await submitWithDefault(data.userId, [operation]);
+  } else {
+    await batchEntities([operation]);
+  }
+
+  // 修改时地址可能换了所属用户，清除全部缓存
+  invalidateAddressBook(id ? undefined : data.userId);
+}
+
+/**
+ * 地址批量导入
+ * 导入的行一律按普通地址写入，记录每个用户最后一条标记为默认的地址，
+ * 导入结束后通过 setDefaultAddress 设置，保证每个用户只有一个默认地址
+ */
+export function createAddressImportHooks(): ImportHooks {
+  // 用户ID -> 导入后设为默认的地址ID
+  const defaults = new Map<string, string>();
+
+  return {
+    transform: (data) => {
+      if (Number(data.isDefault) !== 1 || !data.userId) return data;
+      const id = data._id || generateId();
+      defaults.set(data.userId, id);
+      return { ...data, _id: id, isDefault: 0 };
+    },
+    complete: async () => {
+      for (const [userId, addressId] of defaults) {
+        try {
+          await setDefaultAddress(userId, addressId);
+        } catch (error) {
+          // 该行导入失败时地址不存在，保留用户原来的默认地址
+        }
+      }
+      invalidateAddressBook();
+    },
+  };
+}
+
+/**
+ * 提交累计的使用次数（每个地址一个 $inc 更新，合并在一个批量请求中）
+ */
+export async function flushAddressUsage(): Promise<void> {
+  if (usageTimer) {
+    clearTimeout(usageTimer);
+    usageTimer = null;
+  }
+  if (pendingUsage.size === 0) return;
+
+  const usage = Array.from(pendingUsage.entries());
+  pendingUsage.clear();
+  try {
+    await batchEntities(
+      usage.map(([id, count]) => ({
+        entity: ENTITY,
+        action: 'update',
+        id,
+        data: { usedCount: { $inc: count } },
+      })),
+    );
+  } catch (error) {
+    // 提交失败时放回，下次一起提交
+    usage.forEach(([id, count]) => pendingUsage.set(id, (pendingUsage.get(id) || 0) + count));
+    throw error;
+  }
+}
+
+/**
+ * 记录地址被使用一次（延迟合并提交）
+ */
+export function recordAddressUsage(address: Pick<AddressRecord, '_id' | 'userId'>): void {
+  pendingUsage.set(address._id, (pendingUsage.get(address._id) || 0) + 1);
+
+  const book = books.get(address.userId);
+  const cached = book?.addresses.find((item) => item._id === address._id);
+  if (book && cached) {
+    cached.usedCount = Number(cached.usedCount || 0) + 1;
+    sortAddresses(book.addresses);
+  }
+
+  if (!usageTimer) {
+    usageTimer = setTimeout(() => {
+      flushAddressUsage().catch(() => {
+        // 下次记录使用次数时重试
+      });
+    }, USAGE_FLUSH_DELAY);
+  }
+}
+
+/**
+ * 下单后记录使用的地址：订单地址与地址簿中的地址一致时累计该地址的使用次数
+ * @param order 订单（需要 userId、province、city、district、detailAddress）
+ */
+export async function recordOrderAddress(order: Record<string, any>): Promise<void> {
+  if (!order?.userId || !order.detailAddress) return;
+  const addresses = await getAddressBook(order.userId);
+  const matched = addresses.find(
+    (address) =>
+      address.detailAddress === order.detailAddress &&
+      (!order.city || address.city === order.city) &&
+      (!order.district || !address.district || address.district === order.district),
+  );
+  if (matched) {
+    recordAddressUsage(matched);
+  }
+}
+
+/**
+ * 页面关闭时提交尚未提交的使用次数
+ * 普通请求会随页面卸载被取消，这里用 keepalive 请求（可以携带 Authorization，sendBeacon 不能）
+ */
+function flushAddressUsageOnUnload(): void {
+  if (usageTimer) {
+    clearTimeout(usageTimer);
+    usageTimer = null;
+  }
+  if (pendingUsage.size === 0) return;
+
+  const operations: BatchOperation[] = Array.from(pendingUsage.entries()).map(([id, count]) => ({
+    entity: ENTITY,
+    action: 'update',
+    id,
+    data: { usedCount: { $inc: count } },
+  }));
+  pendingUsage.clear();
+  const accessToken = localStorage.getItem('accessToken');
+  fetch('/api/batch', {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+      ...(accessToken ? { Authorization: `Bearer ${accessToken}` } : {}),
+    },
+    body: JSON.stringify({ operations }),
+    keepalive: true,
+  }).catch(() => {
+    // 页面关闭时无法重试
+  });
+}
+
+if (typeof window !== 'undefined') {
+  window.addEventListener('pagehide', flushAddressUsageOnUnload);
+}
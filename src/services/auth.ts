@@ -19,10 +19,15 @@ export async function login(params: LoginParams) {
 
 /**
  * 登出接口
+ * 令牌在调用前读取并显式传入：调用方随后会清除本地令牌，请求拦截器执行时已读取不到
+ * @param accessToken 当前 accessToken（放在 Authorization 头中）
+ * @param refreshToken 当前 refreshToken（放在请求体中，服务端一并吊销）
  */
-export async function logout() {
+export async function logout(accessToken?: string | null, refreshToken?: string | null) {
   return request<ApiResponse>('/api/admin/auth/logout', {
     method: 'POST',
+    headers: accessToken ? { Authorization: `Bearer ${accessToken}` } : {},
+    data: refreshToken ? { refreshToken } : {},
   });
 }
 
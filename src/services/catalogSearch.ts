@@ -0,0 +1,181 @@
+import { queryEntity } from './genericEntity';
+import { onRemoteInvalidation } from './nearCache';
+import { InvertedIndex } from '@/utils/searchIndex';
+import type { SearchField } from '@/utils/searchIndex';
+
+/**
+ * 商品、服务关键词检索
+ *
+ * 首次检索时分页加载目录的名称及过滤字段（不读取描述等大文本）并建立倒排索引，之后检索只查内存，
+ * 新增、修改、删除后增量更新索引，同一浏览器其他页面的修改通过近端缓存的失效通道清除索引；
+ * 关键词命中的 ID 再交给列表查询，与分类、状态、价格等条件一起在服务端过滤。
+ * 索引只匹配名称，与列表的模糊查询字段相同；目录超过 MAX_INDEXED_RECORDS 条、命中过多或没有命中
+ * （索引可能还没有其他浏览器新增的记录）时改用模糊查询
+ */
+
+export type CatalogEntity = 'product' | 'wqservice';
+
+interface CatalogConfig {
+  fields: SearchField[];
+  fetch: string[];
+}
+
+const CATALOG_CONFIG: Record<CatalogEntity, CatalogConfig> = {
+  product: {
+    fields: [{ name: 'name' }],
+    fetch: ['_id', 'name', 'category', 'status', 'price'],
+  },
+  wqservice: {
+    fields: [{ name: 'name' }],
+    fetch: ['_id', 'name', 'category', 'status', 'price'],
+  },
+};
+
+// 索引有效期，过期后下次检索时重建（其他浏览器中管理员的修改不会通知到当前页面）
+const INDEX_TTL = 5 * 60 * 1000;
+
+// 关键词命中的 ID 超过该数量时改用模糊查询
+const MAX_KEYWORD_IDS = 1000;
+
+// 加载索引时每页的记录数
+const INDEX_PAGE_SIZE = 1000;
+
+// 最多索引的记录数，目录超过该数量时不建索引，检索全部改用模糊查询
+const MAX_INDEXED_RECORDS = 50000;
+
+let unsubscribeRemote: (() => void) | null = null;
+
+interface CatalogIndex {
+  // 目录超过 MAX_INDEXED_RECORDS 条时为 null
+  index: InvertedIndex<any> | null;
+  loadedAt: number;
+}
+
+const catalogIndexes = new Map<CatalogEntity, CatalogIndex>();
+const pendingIndexes = new Map<CatalogEntity, Promise<CatalogIndex>>();
+
+/**
+ * 检索条件
+ */
+export interface CatalogSearchParams {
+  keyword: string;
+  category?: number;
+  status?: number;
+  minPrice?: number;
+  maxPrice?: number;
+  limit?: number;
+}
+
+async function loadCatalogIndex(entity: CatalogEntity): Promise<CatalogIndex> {
+  const cached = catalogIndexes.get(entity);
+  if (cached && Date.now() - cached.loadedAt < INDEX_TTL) {
+    return cached;
+  }
+
+  // 其他页面新增、修改、删除后索引整体失效
+  if (!unsubscribeRemote) {
+    unsubscribeRemote = onRemoteInvalidation((name) => {
+      if (name in CATALOG_CONFIG) {
+        catalogIndexes.delete(name as CatalogEntity);
+      }
+    });
+  }
+
+  let pending = pendingIndexes.get(entity);
+  if (!pending) {
+    pending = buildCatalogIndex(entity)
+      .then((index) => {
+        const loaded = { index, loadedAt: Date.now() };
+        catalogIndexes.set(entity, loaded);
+        return loaded;
+      })
+      .finally(() => {
+        pendingIndexes.delete(entity);
+      });
+    pendingIndexes.set(entity, pending);
+  }
+  return pending;
+}
+
+/**
+ * 按 _id 顺序分页加载并建立索引，超过 MAX_INDEXED_RECORDS 条时放弃并返回 null
+ */
+async function buildCatalogIndex(entity: CatalogEntity): Promise<InvertedIndex<any> | null> {
+  const { fields, fetch } = CATALOG_CONFIG[entity];
+  const index = new InvertedIndex<any>(fields);
+
+  for (let pageNum = 1; ; pageNum++) {
+    const result = await queryEntity<any>(entity, {
+      current: pageNum,
+      pageSize: INDEX_PAGE_SIZE,
+      sort: { _id: 'asc' },
+      fetch,
+      countMode: 'none',
+      readOnly: true,
+    });
+    result.data.forEach((record) => index.put(record));
+    if (index.size > MAX_INDEXED_RECORDS) return null;
+    if (result.data.length < INDEX_PAGE_SIZE) return index;
+  }
+}
+
+function isEmpty(value: any): boolean {
+  return value === undefined || value === null || value === '';
+}
+
+/**
+ * 关键词检索商品或服务（按相关度排序）
+ * @returns 匹配的记录；目录过大没有建立索引时返回 null
+ */
+export async function searchCatalog<T = any>(
+  entity: CatalogEntity,
+  params: CatalogSearchParams,
+): Promise<T[] | null> {
+  const { keyword, category, status, minPrice, maxPrice, limit } = params;
+  const { index } = await loadCatalogIndex(entity);
+  if (!index) return null;
+
+  return index.search(
+    keyword,
+    (record) =>
+      (isEmpty(category) || Number(record.category) === Number(category)) &&
+      (isEmpty(status) || Number(record.status) === Number(status)) &&
+      (isEmpty(minPrice) || Number(record.price) >= Number(minPrice)) &&
+      (isEmpty(maxPrice) || Number(record.price) <= Number(maxPrice)),
+    limit,
+  );
+}
+
+/**
+ * 关键词检索，只返回匹配的 ID（供列表查询使用）
+ * @returns 匹配的 ID；没有索引、没有命中或命中超过 MAX_KEYWORD_IDS 条时返回 null，由列表改用模糊查询
+ */
+export async function searchCatalogIds(entity: CatalogEntity, keyword: string): Promise<string[] | null> {
+  const records = await searchCatalog(entity, { keyword, limit: MAX_KEYWORD_IDS + 1 });
+  if (!records || records.length === 0 || records.length > MAX_KEYWORD_IDS) {
+    return null;
+  }
+  return records.map((record) => record._id);
+}
+
+/**
+ * 记录修改后增量更新索引（索引未加载时无需处理）
+ * @param record 修改后的记录（至少包含 _id）
+ */
+export function updateCatalogIndex(entity: CatalogEntity, record: Record<string, any>): void {
+  const cached = catalogIndexes.get(entity);
+  if (!cached?.index || !record?._id) return;
+  const previous = cached.index.get(record._id) || {};
+  const next: Record<string, any> = { ...previous, _id: record._id };
+  CATALOG_CONFIG[entity].fetch.forEach((field) => {
+    if (record[field] !== undefined) next[field] = record[field];
+  });
+  cached.index.put(next);
+}
+
+/**
+ * 使索引失效，下次检索时重建（新增、删除后使用）
+ */
+export function invalidateCatalogIndex(entity: CatalogEntity): void {
+  catalogIndexes.delete(entity);
+}
@@ -0,0 +1,288 @@
+import { batchEntities, isBatchConflict, queryEntity } from './genericEntity';
+import type { BatchOperation } from './genericEntity';
+import { OrderStatusEnum, ServiceOrderStatusEnum } from '@/constants';
+
+/**
+ * 冗余计数字段重新统计
+ *
+ * Product.sales/rating/reviewCount、Service.sales/rating/reviewCount、
+ * ServiceProvider.rating/reviewCount/orderCount 都是冗余字段，
+ * 这里分页扫描源数据（评价、订单）重新汇总，内存中只保留每条记录的累加值；
+ * 计数字段按与读取时的差额以 $inc 提交，读取目标记录之后到提交之间的并发累加不会被覆盖；
+ * 但源数据扫描结束到读取目标记录之间发生的变更既不在统计结果中，又会被差额抵消，
+ * 因此重新统计不是严格无竞争的，应在业务低峰期执行，必要时再执行一次校正。
+ * 评分是平均值无法累加，带 expect: { reviewCount: 当前值 } 写入，读取后有新评价时跳过该记录
+ */
+
+// 每个批量请求最多包含的更新操作数
+const BATCH_CHUNK_SIZE = 500;
+// 分页扫描源数据的每页条数
+const SCAN_PAGE_SIZE = 1000;
+
+// 已支付且未取消/退款的服务订单状态（待派单 ~ 已完成）
+const PAID_SERVICE_ORDER_STATUSES = [
+  ServiceOrderStatusEnum.PAID,
+  ServiceOrderStatusEnum.ACCEPTED,
+  ServiceOrderStatusEnum.IN_SERVICE,
+  ServiceOrderStatusEnum.TO_REVIEW,
+  ServiceOrderStatusEnum.COMPLETED,
+];
+
+// 已完成的服务订单状态（待评价、已完成）
+const COMPLETED_SERVICE_ORDER_STATUSES = [
+  ServiceOrderStatusEnum.TO_REVIEW,
+  ServiceOrderStatusEnum.COMPLETED,
+];
+
+// 占用库存的商城订单状态（未取消），商品销量与库存同步变动，按这些订单的明细统计
+const STOCK_HOLDING_ORDER_STATUSES = [
+  OrderStatusEnum.PENDING,
+  OrderStatusEnum.PAID,
+  OrderStatusEnum.SHIPPED,
+  OrderStatusEnum.COMPLETED,
+];
+
+/**
+ * 单个实体的计数累加器
+ */
+interface CounterAccumulator {
+  count: number;
+  ratingSum: number;
+  ratingCount: number;
+}
+
+/**
+ * 重新统计结果
+ */
+export interface RebuildCountersResult {
+  scanned: number;
+  updated: number;
+}
+
+/**
+ * 按 _id 顺序分页扫描实体，每页回调一次（不一次加载整张表）
+ */
+async function scanPages<T = any>(
+  entity: string,
+  fetchFields: string[],
+  conditions: Record<string, any> | undefined,
+  onPage: (rows: T[]) => void | Promise<void>,
+): Promise<number> {
+  let scanned = 0;
+  for (let current = 1; ; current++) {
+    const result = await queryEntity<T>(entity, {
+      current,
+      pageSize: SCAN_PAGE_SIZE,
+      conditions,
+      sort: { _id: 'asc' },
+      fetch: fetchFields,
+      countMode: 'none',
+      readOnly: true,
+    });
+    scanned += result.data.length;
+    await onPage(result.data);
+    if (result.data.length < SCAN_PAGE_SIZE) {
+      return scanned;
+    }
+  }
+}
+
+function accumulate(
+  map: Map<string, CounterAccumulator>,
+  key: string | undefined,
+  count: number,
+  rating?: number,
+) {
+  if (!key) return;
+  let acc = map.get(key);
+  if (!acc) {
+    acc = { count: 0, ratingSum: 0, ratingCount: 0 };
+    map.set(key, acc);
+  }
+  acc.count += count;
+  if (rating !== undefined && rating !== null && !isNaN(Number(rating))) {
+    acc.ratingSum += Number(rating);
+    acc.ratingCount++;
+  }
+}
+
+function averageRating(acc?: CounterAccumulator): number {
+  if (!acc || acc.ratingCount === 0) return 0;
+  return Math.round((acc.ratingSum / acc.ratingCount) * 10) / 10;
+}
+
+/**
+ * 提交一批修正操作，评分前置条件冲突时逐条提交并跳过冲突的记录
+ * @returns 实际更新的记录数
+ */
+async function submitCorrections(operations: BatchOperation[]): Promise<number> {
+  try {
+    await batchEntities(operations);
+    return operations.length;
+  } catch (error) {
+    if (!isBatchConflict(error)) throw error;
+  }
+
+  let updated = 0;
+  for (const operation of operations) {
+    try {
+      await batchEntities([operation]);
+      updated++;
+    } catch (error) {
+      if (!isBatchConflict(error)) throw error;
+    }
+  }
+  return updated;
+}
+
+/**
+ * 分页读取目标实体，对比统计值生成修正操作并分批提交
+ * @param countFields 计数字段（按差额 $inc）
+ */
+async function applyCounters(
+  entity: string,
+  countFields: string[],
+  compute: (id: string) => Record<string, number>,
+): Promise<RebuildCountersResult> {
+  const fetchFields = ['_id', 'rating', ...countFields];
+  let updated = 0;
+  const pending: BatchOperation[] = [];
+
+  const flush = async () => {
+    while (pending.length > 0) {
+      updated += await submitCorrections(pending.splice(0, BATCH_CHUNK_SIZE));
+    }
+  };
+
+  const scanned = await scanPages<Record<string, any>>(entity, fetchFields, undefined, async (records) => {
+    records.forEach((record) => {
+      const next = compute(record._id);
+      const data: Record<string, any> = {};
+      countFields.forEach((field) => {
+        const delta = (next[field] || 0) - Number(record[field] || 0);
+        if (delta !== 0) {
+          data[field] = { $inc: delta };
+        }
+      });
+      const ratingChanged = next.rating !== undefined && Number(record.rating || 0) !== next.rating;
+      if (ratingChanged) {
+        data.rating = next.rating;
+      }
+      if (Object.keys(data).length === 0) return;
+
+      pending.push({
+        entity,
+        action: 'update',
+        id: record._id,
+        data,
+        ...(ratingChanged && record.reviewCount !== undefined && record.reviewCount !== null
+          ? { expect: { reviewCount: record.reviewCount } }
+          : {}),
+      });
+    });
+    if (pending.length >= BATCH_CHUNK_SIZE) {
+      await flush();
+    }
+  });
+  await flush();
+
+  return { scanned, updated };
+}
+
+/**
+ * 重新统计商品的销量、评分、评价数量
+ * 销量来自未取消订单的明细（与下单扣减库存时累加的销量一致），评分和评价数量来自商品评价
+ */
+export async function rebuildProductCounters(): Promise<RebuildCountersResult> {
+  const sales = new Map<string, CounterAccumulator>();
+  const ratings = new Map<string, CounterAccumulator>();
+
+  await Promise.all([
+    // 每页未取消订单再按 orderId 查询明细（走 idx_order_id）
+    scanPages<{ _id: string }>(
+      'order',
+      ['_id'],
+      { status: { $in: STOCK_HOLDING_ORDER_STATUSES } },
+      async (orders) => {
+        if (orders.length === 0) return;
+        await scanPages<{ productId: string; quantity: number }>(
+          'orderItem',
+          ['_id', 'productId', 'quantity'],
+          { orderId: { $in: orders.map((order) => order._id) } },
+          (items) => items.forEach((item) => accumulate(sales, item.productId, Number(item.quantity) || 0)),
+        );
+      },
+    ),
+    scanPages<{ productId: string; rating: number }>(
+      'review',
+      ['_id', 'productId', 'rating'],
+      undefined,
+      (reviews) => reviews.forEach((review) => accumulate(ratings, review.productId, 1, review.rating)),
+    ),
+  ]);
+
+  return applyCounters('product', ['sales', 'reviewCount'], (id) => ({
+    sales: sales.get(id)?.count || 0,
+    rating: averageRating(ratings.get(id)),
+    reviewCount: ratings.get(id)?.count || 0,
+  }));
+}
+
+/**
+ * 重新统计服务的销量、评分、评价数量
+ * 销量为已支付且未取消/退款的服务订单数
+ */
+export async function rebuildServiceCounters(): Promise<RebuildCountersResult> {
+  const sales = new Map<string, CounterAccumulator>();
+  const ratings = new Map<string, CounterAccumulator>();
+
+  await Promise.all([
+    scanPages<{ serviceId: string }>(
+      'serviceorder',
+      ['_id', 'serviceId'],
+      { status: { $in: PAID_SERVICE_ORDER_STATUSES } },
+      (orders) => orders.forEach((order) => accumulate(sales, order.serviceId, 1)),
+    ),
+    scanPages<{ serviceId: string; rating: number }>(
+      'servicereview',
+      ['_id', 'serviceId', 'rating'],
+      undefined,
+      (reviews) => reviews.forEach((review) => accumulate(ratings, review.serviceId, 1, review.rating)),
+    ),
+  ]);
+
+  return applyCounters('wqservice', ['sales', 'reviewCount'], (id) => ({
+    sales: sales.get(id)?.count || 0,
+    rating: averageRating(ratings.get(id)),
+    reviewCount: ratings.get(id)?.count || 0,
+  }));
+}
+
+/**
+ * 重新统计服务人员的评分、评价数量、完成订单数
+ */
+export async function rebuildProviderCounters(): Promise<RebuildCountersResult> {
+  const completed = new Map<string, CounterAccumulator>();
+  const ratings = new Map<string, CounterAccumulator>();
+
+  await Promise.all([
+    scanPages<{ providerId: string }>(
+      'serviceorder',
+      ['_id', 'providerId'],
+      { status: { $in: COMPLETED_SERVICE_ORDER_STATUSES } },
+      (orders) => orders.forEach((order) => accumulate(completed, order.providerId, 1)),
+    ),
+    scanPages<{ providerId: string; rating: number }>(
+      'servicereview',
+      ['_id', 'providerId', 'rating'],
+      undefined,
+      (reviews) => reviews.forEach((review) => accumulate(ratings, review.providerId, 1, review.rating)),
+    ),
+  ]);
+
+  return applyCounters('serviceprovider', ['reviewCount', 'orderCount'], (id) => ({
+    rating: averageRating(ratings.get(id)),
+    reviewCount: ratings.get(id)?.count || 0,
+    orderCount: completed.get(id)?.count || 0,
+  }));
+}
@@ -0,0 +1,419 @@
+import dayjs from 'dayjs';
+import { getEntityById, queryEntity } from './genericEntity';
+import type { BatchOperation } from './genericEntity';
+import { onRemoteInvalidation } from './nearCache';
+import { CouponTypeEnum, UserCouponStatusEnum } from '@/constants';
+
+/**
+ * 服务优惠券适用索引与订单计价
+ *
+ * ServiceCoupon.applicableServices / applicableCategories 是 TEXT 字段（JSON 数组或逗号分隔），
+ * 这里一次加载全部启用且未过期的优惠券，解析后建立「服务ID -> 优惠券」「服务分类 -> 优惠券」索引，
+ * 两个列表都为空的优惠券适用于全部服务；计价时只查内存，按有效期、最低消费过滤，
+ * 再与用户领取且未使用的优惠券（UserServiceCoupon）取交集，选出优惠金额最大的一张。
+ * 发行量、每人限领数量在领取时校验，这里不再判断；下单时由 checkCouponUsable 重新读取优惠券和用户的领取记录，
+ * 领取记录改为已使用（以仍未使用为前置条件）与订单写入在同一个批量请求中提交
+ */
+
+/**
+ * 优惠券（计价用到的字段）
+ */
+export interface ServiceCouponRecord {
+  _id: string;
+  name: string;
+  type: number;
+  amount?: number | string;
+  discountPercentage?: number;
+  minAmount?: number | string;
+  applicableServices?: string;
+  applicableCategories?: string;
+  startTime: string;
+  endTime: string;
+  status: number;
+}
+
+/**
+ * 用户领取的优惠券（UserServiceCoupon）
+ */
+export interface UserCouponRecord {
+  _id: string;
+  userId: string;
+  couponId: string;
+  status: number;
+  // 使用该优惠券的服务订单
+  orderId?: string | null;
+}
+
+/**
+ * 可用优惠券及优惠金额
+ */
+export interface CouponQuote {
+  coupon: ServiceCouponRecord;
+  discountAmount: number;
+}
+
+/**
+ * 订单计价结果
+ */
+export interface ServiceOrderPrice {
+  originalPrice: number;
+  discountAmount: number;
+  finalPrice: number;
+  // 使用的优惠券，没有可用优惠券时为 null
+  coupon: ServiceCouponRecord | null;
+  // 全部可用优惠券（按优惠金额从大到小）
+  candidates: CouponQuote[];
+}
+
+/**
+ * 计价参数
+ */
+export interface PriceParams {
+  serviceId: string;
+  // 下单用户，只计算该用户领取且未使用的优惠券，不传时不使用优惠券
+  userId?: string;
+  // 原价，不传时使用服务的价格
+  originalPrice?: number;
+  // 指定优惠券，不传时自动选择优惠金额最大的
+  couponId?: string;
+  // 编辑订单时订单本身已使用的优惠券仍计为可用
+  orderId?: string;
+  // 下单时间，默认当前时间
+  at?: dayjs.ConfigType;
+}
+
+interface CouponIndex {
+  byService: Map<string, ServiceCouponRecord[]>;
+  byCategory: Map<string, ServiceCouponRecord[]>;
+  // 不限服务和分类的优惠券
+  universal: ServiceCouponRecord[];
+  loadedAt: number;
+}
+
+// 索引有效期（与近端缓存中优惠券的有效期一致）
+const INDEX_TTL = 30 * 1000;
+
+// 计价只需要的字段
+const COUPON_FIELDS = [
+  '_id',
+  'name',
+  'type',
+  'amount',
+  'discountPercentage',
+  'minAmount',
+  'applicableServices',
+  'applicableCategories',
+  'startTime',
+  'endTime',
+  'status',
+];
+
+const USER_COUPON_ENTITY = 'userservicecoupon';
+
+const USER_COUPON_FIELDS = ['_id', 'userId', 'couponId', 'status', 'orderId'];
+
+const { UNUSED, USED } = UserCouponStatusEnum;
+
+let couponIndex: CouponIndex | null = null;
+let pendingIndex: Promise<CouponIndex> | null = null;
+let unsubscribeRemote: (() => void) | null = null;
+
+/**
+ * 解析适用范围（JSON 数组或逗号分隔的字符串）
+ */
+function parseList(value?: string): string[] {
+  if (!value || !value.trim()) return [];
+  const text = value.trim();
+  if (text.startsWith('[')) {
+    try {
+      const list = JSON.parse(text);
+      if (Array.isArray(list)) {
+        return list.map((item) => String(item).trim()).filter(Boolean);
+      }
+    } catch (error) {
+      // 不是合法 JSON 时按逗号分隔处理
+    }
+  }
+  return text
+    .replace(/[[\]"']/g, '')
+    .split(/[,，\s]+/)
+    .filter(Boolean);
+}
+
+function addTo(map: Map<string, ServiceCouponRecord[]>, key: string, coupon: ServiceCouponRecord) {
+  const list = map.get(key);
+  if (list) {
+    list.push(coupon);
+  } else {
+    map.set(key, [coupon]);
+  }
+}
+
+async function buildIndex(): Promise<CouponIndex> {
+  // 索引自身有有效期，不再经过近端缓存，避免叠加两层缓存时间
+  const result = await queryEntity<ServiceCouponRecord>('servicecoupon', {
+    conditions: {
+      status: 1,
+      endTime: { $gte: dayjs().format('YYYY-MM-DD HH:mm:ss') },
+    },
+    fetch: COUPON_FIELDS,
+    countMode: 'none',
+    readOnly: true,
+    noCache: true,
+  });
+
+  const index: CouponIndex = {
+    byService: new Map(),
+    byCategory: new Map(),
+    universal: [],
+    loadedAt: Date.now(),
+  };
+  result.data.forEach((coupon) => {
+    const services = parseList(coupon.applicableServices);
+    const categories = parseList(coupon.applicableCategories);
+    if (services.length === 0 && categories.length === 0) {
+      index.universal.push(coupon);
+      return;
+    }
+    services.forEach((serviceId) => addTo(index.byService, serviceId, coupon));
+    categories.forEach((category) => addTo(index.byCategory, category, coupon));
+  });
+  return index;
+}
+
+/**
+ * 获取优惠券索引（过期后重新加载，并发调用共用一个请求）
+ */
+function loadIndex(): Promise<CouponIndex> {
+  // 其他页面修改优惠券后索引失效
+  if (!unsubscribeRemote) {
+    unsubscribeRemote = onRemoteInvalidation((entity) => {
+      if (entity === 'servicecoupon') {
+        couponIndex = null;
+      }
+    });
+  }
+  if (couponIndex && Date.now() - couponIndex.loadedAt < INDEX_TTL) {
+    return Promise.resolve(couponIndex);
+  }
+  if (!pendingIndex) {
+    pendingIndex = buildIndex()
+      .then((index) => {
+        couponIndex = index;
+        return index;
+      })
+      .finally(() => {
+        pendingIndex = null;
+      });
+  }
+  return pendingIndex;
+}
+
+/**
+ * 优惠券新增、修改、删除后清除索引
+ */
+export function invalidateCouponIndex(): void {
+  couponIndex = null;
+}
+
+/**
+ * 计算优惠金额（不满足最低消费时返回 0）
+ */
+export function calculateDiscount(coupon: ServiceCouponRecord, price: number): number {
+  if (price <= 0 || price < Number(coupon.minAmount || 0)) return 0;
+
+  let discount = 0;
+  if (coupon.type === CouponTypeEnum.AMOUNT) {
+    discount = Number(coupon.amount || 0);
+  } else if (coupon.type === CouponTypeEnum.PERCENTAGE) {
+    // 折扣比例 90 表示按九折支付
+    const percentage = Math.min(Math.max(Number(coupon.discountPercentage ?? 100), 0), 100);
+    discount = (price * (100 - percentage)) / 100;
+  } else if (coupon.type === CouponTypeEnum.FREE) {
+    discount = price;
+  }
+  return Math.round(Math.min(Math.max(discount, 0), price) * 100) / 100;
+}
+
+/**
+ * 查询适用于服务的优惠券（已按有效期过滤）
+ * @param service 服务（需要 _id 和 category）
+ */
+export async function getApplicableCoupons(
+  service: { _id: string; category?: string },
+  at: dayjs.ConfigType = undefined,
+): Promise<ServiceCouponRecord[]> {
+  const index = await loadIndex();
+  const time = dayjs(at);
+  const candidates = new Map<string, ServiceCouponRecord>();
+  [
+    ...index.universal,
+    ...(index.byService.get(service._id) || []),
+    ...(service.category ? index.byCategory.get(service.category) || [] : []),
+  ].forEach((coupon) => candidates.set(coupon._id, coupon));
+
+  return Array.from(candidates.values()).filter(
+    (coupon) => !time.isBefore(dayjs(coupon.startTime)) && !time.isAfter(dayjs(coupon.endTime)),
+  );
+}
+
+/**
+ * 用户可以使用的优惠券ID（领取且未使用；编辑订单时包括该订单已使用的）
+ */
+async function loadHeldCouponIds(userId: string, orderId?: string): Promise<Set<string>> {
+  const result = await queryEntity<UserCouponRecord>(USER_COUPON_ENTITY, {
+    conditions: { userId },
+    fetch: USER_COUPON_FIELDS,
+    countMode: 'none',
+    readOnly: true,
+  });
+  return new Set(
+    result.data
+      .filter(
+        (row) =>
+          Number(row.status) === UNUSED || (!!orderId && Number(row.status) === USED && row.orderId === orderId),
+      )
+      .map((row) => row.couponId),
+  );
+}
+
+/**
+ * 服务订单计价：返回原价、优惠金额、实付金额及使用的优惠券
+ * 指定的优惠券不可用时按不使用优惠券计价
+ */
+export async function priceServiceOrder(params: PriceParams): Promise<ServiceOrderPrice> {
+  const service = await getEntityById<{ _id: string; category?: string; price?: number | string }>(
+    'wqservice',
+    params.serviceId,
+  );
+  const originalPrice = Number(params.originalPrice ?? service?.price ?? 0);
+  const empty: ServiceOrderPrice = {
+    originalPrice,
+    discountAmount: 0,
+    finalPrice: originalPrice,
+    coupon: null,
+    candidates: [],
+  };
+  if (!service || !params.userId) return empty;
+
+  const [applicable, held] = await Promise.all([
+    getApplicableCoupons(service, params.at),
+    loadHeldCouponIds(params.userId, params.orderId),
+  ]);
+  const coupons = applicable.filter((coupon) => held.has(coupon._id));
+
+  const candidates = coupons
+    .map((coupon) => ({ coupon, discountAmount: calculateDiscount(coupon, originalPrice) }))
+    .filter((quote) => quote.discountAmount > 0)
+    .sort((a, b) => b.discountAmount - a.discountAmount);
+
+  const chosen = params.couponId
+    ? candidates.find((quote) => quote.coupon._id === params.couponId)
+    : candidates[0];
+  if (!chosen) {
+    return { ...empty, candidates };
+  }
+
+  return {
+    originalPrice,
+    discountAmount: chosen.discountAmount,
+    finalPrice: Math.round((originalPrice - chosen.discountAmount) * 100) / 100,
+    coupon: chosen.coupon,
+    candidates,
+  };
+}
+
+/**
+ * 订单使用优惠券前重新校验（不使用索引和近端缓存）
+ * 校验优惠券的启用状态、有效期，以及用户是否领取了该优惠券且未使用
+ * @returns 校验通过的优惠券和用户的一条未使用领取记录
+ * @throws 不可用时抛出错误，message 为原因
+ */
+export async function checkCouponUsable(
+  couponId: string,
+  userId: string | undefined,
+  at: dayjs.ConfigType = undefined,
+): Promise<{ coupon: ServiceCouponRecord; userCoupon: UserCouponRecord }> {
+  if (!userId) {
+    throw new Error('请先选择下单用户');
+  }
+  const [coupons, userCoupons] = await Promise.all([
+    queryEntity<ServiceCouponRecord>('servicecoupon', {
+      conditions: { _id: couponId },
+      fetch: COUPON_FIELDS,
+      countMode: 'none',
+      noCache: true,
+    }),
+    queryEntity<UserCouponRecord>(USER_COUPON_ENTITY, {
+      conditions: { userId, couponId, status: UNUSED },
+      fetch: USER_COUPON_FIELDS,
+      pageSize: 1,
+      current: 1,
+      countMode: 'none',
+    }),
+  ]);
+  const coupon = coupons.data[0];
+  if (!coupon || Number(coupon.status) !== 1) {
+    throw new Error('优惠券不存在或已停用');
+  }
+  const time = dayjs(at);
+  if (time.isBefore(dayjs(coupon.startTime)) || time.isAfter(dayjs(coupon.endTime))) {
+    throw new Error('优惠券不在有效期内');
+  }
+  const userCoupon = userCoupons.data[0];
+  if (!userCoupon) {
+    throw new Error('该用户没有可用的此优惠券');
+  }
+  return { coupon, userCoupon };
+}
+
+/**
+ * 使用优惠券：领取记录改为已使用并关联订单（以仍未使用为前置条件），优惠券已使用数量 +1
+ * 需要与订单写入放在同一个批量请求中
+ */
+export function consumeCouponOperations(userCoupon: UserCouponRecord, orderId: string): BatchOperation[] {
+  return [
+    {
+      entity: USER_COUPON_ENTITY,
+      action: 'update',
+      id: userCoupon._id,
+      data: { status: USED, orderId },
+      expect: { status: UNUSED },
+    },
+    {
+      entity: 'servicecoupon',
+      action: 'update',
+      id: userCoupon.couponId,
+      data: { usedCount: { $inc: 1 } },
+    },
+  ];
+}
+
+/**
+ * 归还订单使用的优惠券（订单换券、取消、退款时）：
+ * 领取记录改回未使用（以仍为该订单使用为前置条件），优惠券已使用数量 -1
+ * @param orderIds 订单ID列表
+ */
+export async function releaseCouponOperations(orderIds: string[]): Promise<BatchOperation[]> {
+  if (orderIds.length === 0) return [];
+  const result = await queryEntity<UserCouponRecord>(USER_COUPON_ENTITY, {
+    conditions: { orderId: { $in: orderIds }, status: USED },
+    fetch: USER_COUPON_FIELDS,
+    countMode: 'none',
+  });
+  return result.data.flatMap((row) => [
+    {
+      entity: USER_COUPON_ENTITY,
+      action: 'update' as const,
+      id: row._id,
+      data: { status: UNUSED, orderId: null },
+      expect: { status: USED, orderId: row.orderId },
+    },
+    {
+      entity: 'servicecoupon',
+      action: 'update' as const,
+      id: row.couponId,
+      data: { usedCount: { $inc: -1 } },
+    },
+  ]);
+}
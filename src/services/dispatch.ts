@@ -0,0 +1,351 @@
+import { SERVER_NOW, batchEntities, getEntityById, isBatchConflict, queryEntity } from './genericEntity';
+import { ProviderStatusEnum, ServiceOrderStatusEnum } from '@/constants';
+import { GeoIndex, parseGeoPoint } from '@/utils/geo';
+import type { GeoPoint } from '@/utils/geo';
+
+/**
+ * 服务人员派单
+ *
+ * 在内存中维护空闲服务人员索引：按 serviceId / 服务分类分桶，桶内按评分、工作量预先排序，
+ * categories、serviceIds 两个 TEXT 字段只在建索引时解析一次，派单查询只需按桶过滤；
+ * 有坐标的空闲服务人员另外放入空间索引，订单带坐标时按距离由近到远查询，状态变化时同步增删
+ */
+
+/**
+ * 派单候选服务人员
+ */
+export interface ProviderCandidate {
+  _id: string;
+  name: string;
+  phone: string;
+  communityId?: string;
+  rating: number;
+  orderCount: number;
+  status: number;
+  currentOrderId?: string | null;
+  categories: string[];
+  serviceIds: string[];
+  longitude?: number;
+  latitude?: number;
+  // 与订单地址的距离（米），按位置查询时返回
+  distance?: number;
+}
+
+interface ProviderIndex {
+  all: ProviderCandidate[];
+  byId: Map<string, ProviderCandidate>;
+  byServiceId: Map<string, ProviderCandidate[]>;
+  byCategory: Map<string, ProviderCandidate[]>;
+  // 有坐标的空闲服务人员
+  nearby: GeoIndex<ProviderCandidate>;
+  loadedAt: number;
+}
+
+// 索引有效期，过期后下次查询时重新加载
+const INDEX_TTL = 60 * 1000;
+// 加载索引时每页读取的服务人员数
+const LOAD_PAGE_SIZE = 1000;
+
+const PROVIDER_FIELDS = [
+  '_id',
+  'name',
+  'phone',
+  'communityId',
+  'rating',
+  'orderCount',
+  'status',
+  'currentOrderId',
+  'categories',
+  'serviceIds',
+  'longitude',
+  'latitude',
+];
+
+let providerIndex: ProviderIndex | null = null;
+let loadingIndex: Promise<ProviderIndex> | null = null;
+
+/**
+ * 解析 JSON 数组或逗号分隔的字符串
+ */
+function parseList(value: any): string[] {
+  if (!value) return [];
+  if (Array.isArray(value)) return value.map(String);
+  const text = String(value).trim();
+  if (text.startsWith('[')) {
+    try {
+      const parsed = JSON.parse(text);
+      if (Array.isArray(parsed)) return parsed.map(String);
+    } catch (error) {
+      // 不是合法 JSON，按逗号分隔处理
+    }
+  }
+  return text
+    .replace(/^\[|\]$/g, '')
+    .split(',')
+    .map((item) => item.trim().replace(/^["']|["']$/g, ''))
+    .filter(Boolean);
+}
+
+/**
+ * 解析坐标，缺失或无效时两个字段都不设置
+ */
+function parseLocation(longitude: any, latitude: any): Pick<ProviderCandidate, 'longitude' | 'latitude'> {
+  const point = parseGeoPoint(longitude, latitude);
+  return point ? { longitude: point.lng, latitude: point.lat } : { longitude: undefined, latitude: undefined };
+}
+
+/**
+ * 排序规则：评分高的优先，评分相同时完成订单少（工作量低）的优先
+ */
+function compareCandidates(a: ProviderCandidate, b: ProviderCandidate): number {
+  if (b.rating !== a.rating) return b.rating - a.rating;
+  return a.orderCount - b.orderCount;
+}
+
+function addToBucket(buckets: Map<string, ProviderCandidate[]>, key: string, provider: ProviderCandidate) {
+  const bucket = buckets.get(key);
+  if (bucket) {
+    bucket.push(provider);
+  } else {
+    buckets.set(key, [provider]);
+  }
+}
+
+function isAvailable(provider: ProviderCandidate): boolean {
+  return provider.status === ProviderStatusEnum.AVAILABLE && !provider.currentOrderId;
+}
+
+/**
+ * 按状态和坐标维护空间索引：只保留有坐标的空闲服务人员
+ */
+function syncNearby(nearby: GeoIndex<ProviderCandidate>, provider: ProviderCandidate) {
+  if (isAvailable(provider) && provider.longitude !== undefined && provider.latitude !== undefined) {
+    nearby.put(provider._id, provider.longitude, provider.latitude, provider);
+  } else {
+    nearby.remove(provider._id);
+  }
+}
+
+function buildIndex(records: any[]): ProviderIndex {
+  const all: ProviderCandidate[] = records.map((record) => ({
+    ...parseLocation(record.longitude, record.latitude),
+    _id: record._id,
+    name: record.name,
+    phone: record.phone,
+    communityId: record.communityId,
+    rating: Number(record.rating) || 0,
+    orderCount: Number(record.orderCount) || 0,
+    status: Number(record.status),
+    currentOrderId: record.currentOrderId,
+    categories: parseList(record.categories),
+    serviceIds: parseList(record.serviceIds),
+  }));
+  all.sort(compareCandidates);
+
+  const byId = new Map<string, ProviderCandidate>();
+  const byServiceId = new Map<string, ProviderCandidate[]>();
+  const byCategory = new Map<string, ProviderCandidate[]>();
+  const nearby = new GeoIndex<ProviderCandidate>();
+  // all 已排序，按顺序放入各个桶后桶内同样有序
+  all.forEach((provider) => {
+    byId.set(provider._id, provider);
+    provider.serviceIds.forEach((serviceId) => addToBucket(byServiceId, serviceId, provider));
+    provider.categories.forEach((category) => addToBucket(byCategory, category, provider));
+    syncNearby(nearby, provider);
+  });
+
+  return { all, byId, byServiceId, byCategory, nearby, loadedAt: Date.now() };
+}
+
+/**
+ * 按 _id 顺序分页读取全部服务人员（只读取派单需要的字段）
+ */
+async function loadProviders(): Promise<any[]> {
+  const records: any[] = [];
+  for (let current = 1; ; current++) {
+    const result = await queryEntity('serviceprovider', {
+      current,
+      pageSize: LOAD_PAGE_SIZE,
+      sort: { _id: 'asc' },
+      fetch: PROVIDER_FIELDS,
+      countMode: 'none',
+      readOnly: true,
+    });
+    records.push(...result.data);
+    if (result.data.length < LOAD_PAGE_SIZE) {
+      return records;
+    }
+  }
+}
+
+/**
+ * 加载服务人员索引（并发调用共用一个请求）
+ * @param force 是否强制重新加载
+ */
+export async function loadProviderIndex(force: boolean = false): Promise<ProviderIndex> {
+  if (!force && providerIndex && Date.now() - providerIndex.loadedAt < INDEX_TTL) {
+    return providerIndex;
+  }
+  if (!loadingIndex) {
+    loadingIndex = loadProviders()
+      .then((records) => {
+        providerIndex = buildIndex(records);
+        return providerIndex;
+      })
+      .finally(() => {
+        loadingIndex = null;
+      });
+  }
+  return loadingIndex;
+}
+
+/**
+ * 服务人员新增、删除后清除索引，下次查询时重新加载
+ */
+export function invalidateProviderIndex(): void {
+  providerIndex = null;
+}
+
+/**
+ * 查询可派单的服务人员
+ * 优先匹配可提供该服务的人员，没有时按服务分类匹配；
+ * 传入位置时按距离由近到远排序（没有坐标的人员排在最后，指定半径时不返回），否则按评分、工作量排序
+ */
+export async function findAvailableProviders(params: {
+  serviceId?: string;
+  category?: string;
+  communityId?: string;
+  // 订单地址坐标
+  location?: GeoPoint;
+  // 搜索半径（米）
+  radius?: number;
+  limit?: number;
+}): Promise<ProviderCandidate[]> {
+  const { serviceId, category, communityId, location, radius, limit = 20 } = params;
+  const index = await loadProviderIndex();
+
+  let candidates: ProviderCandidate[] | undefined;
+  if (serviceId) {
+    candidates = index.byServiceId.get(serviceId);
+  }
+  if ((!candidates || candidates.length === 0) && category) {
+    candidates = index.byCategory.get(category);
+  }
+  if (!serviceId && !category) {
+    candidates = index.all;
+  }
+
+  const matches = (provider: ProviderCandidate) =>
+    isAvailable(provider) && (!communityId || provider.communityId === communityId);
+
+  const result: ProviderCandidate[] = [];
+  if (location) {
+    const allowed = candidates === index.all ? null : new Set(candidates || []);
+    index.nearby
+      .nearest(location.lng, location.lat, limit, radius, (provider) =>
+        (!allowed || allowed.has(provider)) && matches(provider),
+      )
+      .forEach(({ item, distance }) => result.push({ ...item, distance }));
+    if (radius !== undefined) return result;
+  }
+
+  for (const provider of candidates || []) {
+    if (result.length >= limit) break;
+    // 按位置查询时这里只补充没有坐标的人员
+    if (location && provider.longitude !== undefined) continue;
+    if (matches(provider)) result.push(provider);
+  }
+  return result;
+}
+
+/**
+ * 更新索引中服务人员的状态、位置（订单流转、编辑服务人员时增量维护，无需重新加载）
+ */
+export function updateProviderInIndex(
+  providerId: string,
+  changes: Partial<Record<'status' | 'currentOrderId' | 'orderCount' | 'longitude' | 'latitude', any>>,
+): void {
+  const provider = providerIndex?.byId.get(providerId);
+  if (!provider) return;
+
+  const { longitude, latitude, ...rest } = changes;
+  Object.assign(provider, rest);
+  if (rest.status !== undefined) provider.status = Number(rest.status);
+  if ('longitude' in changes || 'latitude' in changes) {
+    Object.assign(
+      provider,
+      parseLocation(
+        'longitude' in changes ? longitude : provider.longitude,
+        'latitude' in changes ? latitude : provider.latitude,
+      ),
+    );
+  }
+  syncNearby(providerIndex!.nearby, provider);
+}
+
+/**
+ * 派单：把服务订单分配给服务人员
+ * 派单前重新读取服务人员的最新状态，订单和服务人员在同一个批量请求（同一事务）中更新，
+ * 并分别要求订单仍为待派单、服务人员仍为空闲，任一条件不满足则整体回滚
+ * @param orderId 服务订单ID
+ * @param providerId 服务人员ID
+ */
+export async function assignProvider(orderId: string, providerId: string): Promise<void> {
+  const latest = await getEntityById<any>('serviceprovider', providerId);
+  if (!latest) {
+    throw new Error('服务人员不存在或已被删除');
+  }
+  if (
+    Number(latest.status) !== ProviderStatusEnum.AVAILABLE ||
+    (latest.currentOrderId && latest.currentOrderId !== orderId)
+  ) {
+    updateProviderInIndex(providerId, {
+      status: Number(latest.status),
+      currentOrderId: latest.currentOrderId,
+    });
+    throw new Error('该服务人员已被派单或不在空闲状态');
+  }
+
+  // 先在本地占用，避免同一页面重复派给同一个人
+  updateProviderInIndex(providerId, {
+    status: ProviderStatusEnum.BUSY,
+    currentOrderId: orderId,
+  });
+
+  try {
+    await batchEntities([
+      {
+        entity: 'serviceorder',
+        action: 'update',
+        id: orderId,
+        data: {
+          providerId,
+          providerName: latest.name,
+          providerPhone: latest.phone,
+          status: ServiceOrderStatusEnum.ACCEPTED,
+          acceptTime: SERVER_NOW,
+        },
+        expect: { status: ServiceOrderStatusEnum.PAID },
+      },
+      {
+        entity: 'serviceprovider',
+        action: 'update',
+        id: providerId,
+        data: {
+          status: ProviderStatusEnum.BUSY,
+          currentOrderId: orderId,
+        },
+        expect: { status: ProviderStatusEnum.AVAILABLE },
+      },
+    ]);
+  } catch (error) {
+    updateProviderInIndex(providerId, {
+      status: ProviderStatusEnum.AVAILABLE,
+      currentOrderId: null,
+    });
+    if (isBatchConflict(error)) {
+      throw new Error('订单或服务人员状态已变化，请刷新后重试');
+    }
+    throw error;
+  }
+}
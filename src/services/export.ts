@@ -0,0 +1,176 @@
+import { queryEntity } from './genericEntity';
+import { renewAccessToken } from '@/requestConfig';
+import { openExportWriter, serializeRows } from '@/utils/export';
+import type { ExportColumn, ExportFormat, ExportWriter } from '@/utils/export';
+
+/**
+ * 实体数据导出
+ *
+ * 优先使用服务端流式导出接口（/api/batch/export，按 JDBC fetch size 游标读取，逐行写出），
+ * 响应体直接写入文件；服务端不支持时退化为分页逐页拉取（服务端返回游标后改用游标分页），每页写完即释放
+ */
+
+// 退化为分页拉取时的每页条数
+const EXPORT_PAGE_SIZE = 1000;
+
+/**
+ * 导出参数
+ */
+export interface ExportParams {
+  conditions?: Record<string, any>;
+  sort?: Record<string, 'asc' | 'desc'>;
+  columns: ExportColumn[];
+  format?: ExportFormat;
+  filename?: string;
+}
+
+/**
+ * 使用服务端流式导出接口
+ * @returns 导出的行数，接口不可用时返回 null
+ */
+async function streamFromServer(
+  entity: string,
+  params: ExportParams,
+  format: ExportFormat,
+  writer: ExportWriter,
+): Promise<number | null> {
+  const body = JSON.stringify({
+    entity,
+    conditions: params.conditions,
+    sort: params.sort,
+    fetch: params.columns.map((column) => column.dataIndex),
+    header: params.columns.map((column) => column.title),
+    format,
+  });
+  const post = (accessToken: string | null) =>
+    fetch('/api/batch/export', {
+      method: 'POST',
+      headers: {
+        'Content-Type': 'application/json',
+        ...(accessToken ? { Authorization: `Bearer ${accessToken}` } : {}),
+      },
+      body,
+    });
+
+  let response: Response;
+  try {
+    response = await post(localStorage.getItem('accessToken'));
+  } catch (error) {
+    return null;
+  }
+
+  // 响应体需要流式读取，不经过 request；令牌过期时使用与 request 相同的刷新逻辑，刷新后重试一次
+  if (response.status === 401) {
+    const accessToken = await renewAccessToken();
+    try {
+      response = await post(accessToken);
+    } catch (error) {
+      return null;
+    }
+  }
+
+  // 接口不存在或返回了 JSON 错误信息，视为不支持流式导出
+  const contentType = response.headers.get('Content-Type') || '';
+  if (!response.ok || !response.body || contentType.includes('application/json')) {
+    return null;
+  }
+
+  const reader = response.body.getReader();
+  let lines = 0;
+  // CSV 引号内的换行属于单元格内容，不计为行（NDJSON 字符串中的换行已转义）
+  let quoted = false;
+  for (;;) {
+    const { done, value } = await reader.read();
+    if (done) break;
+    for (let i = 0; i < value.length; i++) {
+      if (format === 'csv' && value[i] === 34) {
+        quoted = !quoted;
+      } else if (value[i] === 10 && !quoted) {
+        lines++;
+      }
+    }
+    await writer.write(value);
+  }
+  // CSV 第一行是表头
+  return format === 'csv' ? Math.max(0, lines - 1) : lines;
+}
+
+/**
+ * 分页逐页拉取并写入
+ * 第一页按页码查询，服务端返回 nextCursor 时后续页改用游标分页，否则继续按页码分页
+ */
+async function pageFromQuery(
+  entity: string,
+  params: ExportParams,
+  format: ExportFormat,
+  writer: ExportWriter,
+): Promise<number> {
+  const fetchFields = params.columns.map((column) => column.dataIndex);
+  let cursor: string | undefined;
+  let pageNum = 1;
+  let rows = 0;
+
+  for (;;) {
+    const result = await queryEntity<any>(entity, {
+      conditions: params.conditions,
+      sort: params.sort,
+      fetch: fetchFields.includes('_id') ? fetchFields : [...fetchFields, '_id'],
+      pageSize: EXPORT_PAGE_SIZE,
+      ...(cursor !== undefined ? { cursor } : { current: pageNum }),
+      countMode: 'none',
+      readOnly: true,
+    });
+
+    await writer.write(serializeRows(result.data, format, params.columns, rows === 0));
+    rows += result.data.length;
+
+    if (result.data.length < EXPORT_PAGE_SIZE) break;
+    pageNum++;
+    // 游标分页中途不再返回游标时无法换回页码分页（页码与已写出的行对不上），中止导出
+    if (cursor !== undefined && !result.nextCursor) {
+      throw new Error('导出分页中断，请重试');
+    }
+    cursor = result.nextCursor || undefined;
+  }
+
+  return rows;
+}
+
+/**
+ * 导出查询结果（需要在用户点击事件中调用）
+ * @param entity 实体名称（小写）
+ * @returns 导出的行数，用户取消保存时返回 null
+ */
+export async function exportEntity(entity: string, params: ExportParams): Promise<number | null> {
+  const format = params.format || 'csv';
+  const filename = params.filename || `${entity}.${format}`;
+  const writer = await openExportWriter(filename, format);
+  if (!writer) return null;
+
+  try {
+    let rows = await streamFromServer(entity, params, format, writer);
+    if (rows === null) {
+      rows = await pageFromQuery(entity, params, format, writer);
+    }
+    await writer.close();
+    return rows;
+  } catch (error) {
+    await writer.abort();
+    throw error;
+  }
+}
+
+/**
+ * 导出已加载的记录（如表格中选中的行）
+ */
+export async function exportRows(
+  rows: Record<string, any>[],
+  params: Pick<ExportParams, 'columns' | 'format' | 'filename'>,
+): Promise<number | null> {
+  const format = params.format || 'csv';
+  const writer = await openExportWriter(params.filename || `export.${format}`, format);
+  if (!writer) return null;
+  await writer.write(serializeRows(rows, format, params.columns, true));
+  await writer.close();
+  return rows.length;
+}
@@ -1,5 +1,6 @@
 import { request } from '@umijs/max';
 import type { RequestData } from '@/components/GenericCrud/types';
+import { cachedQuery, invalidateNearCache, isNearCached } from './nearCache';
 
 /**
  * 实体字段信息（API 返回格式）
@@ -17,19 +18,70 @@ export interface EntityFieldsResponse {
   [fieldName: string]: EntityFieldInfo;
 }
 
+/**
+ * 总数统计方式
+ * - exact：精确 COUNT(*)（默认）
+ * - estimate：使用估算值
+ * - none：不统计总数
+ */
+export type CountMode = 'exact' | 'estimate' | 'none';
+
 /**
  * 批处理请求参数
  */
 interface BatchRequestParams {
   entity: string;
-  action: 'create' | 'query' | 'update' | 'delete';
+  action: 'create' | 'query' | 'update' | 'delete' | 'get' | 'mget';
   id?: string;
+  ids?: string[];
   data?: Record<string, any>;
   conditions?: Record<string, any>;
   pageNum?: number;
   pageSize?: number;
   sort?: Record<string, 'asc' | 'desc'>;
   fetch?: string[];
+  cursor?: string;
+  countMode?: CountMode;
+  readOnly?: boolean;
+}
+
+/**
+ * 写入服务端当前时间（数据库时区），用于状态流转时间等字段，不使用浏览器时钟
+ */
+export const SERVER_NOW = { $now: true };
+
+/**
+ * 批量操作中的单个操作
+ */
+export interface BatchOperation {
+  entity: string;
+  // check 只校验 id 对应记录的前置条件，不写入
+  action: 'create' | 'update' | 'delete' | 'check';
+  id?: string;
+  data?: Record<string, any>;
+  // 按条件批量更新（不传 id 时使用），例如清除用户的其他默认地址
+  conditions?: Record<string, any>;
+  // 更新/删除/校验的前置条件（字段名-期望值），记录不存在或当前值不匹配时整个批量请求回滚并返回 409
+  expect?: Record<string, any>;
+}
+
+// 批量操作前置条件不满足（记录已被其他请求修改）
+export const BATCH_CONFLICT_CODE = 409;
+
+/**
+ * 判断是否为前置条件冲突导致的批量操作失败
+ */
+export function isBatchConflict(error: any): boolean {
+  return error?.code === BATCH_CONFLICT_CODE;
+}
+
+/**
+ * 批量操作中单个操作的执行结果（与请求中的操作一一对应）
+ */
+export interface BatchOperationResult<T = any> {
+  code: number;
+  message: string;
+  data: T;
 }
 
 /**
@@ -45,28 +97,120 @@ interface BatchResponse<T = any> {
   timestamp: number;
 }
 
+// 实体字段信息缓存（实体结构在运行期间不会变化，每个实体只请求一次）
+const entityFieldsCache = new Map<string, EntityFieldsResponse>();
+
+// 进行中的字段请求，同一实体并发挂载时共用一个请求
+const pendingEntityFields = new Map<string, Promise<EntityFieldsResponse>>();
+
+// 批量预加载请求（只执行一次）
+let preloadPromise: Promise<void> | null = null;
+
+// 单个 mget 请求最多包含的 ID 数
+const MGET_CHUNK_SIZE = 500;
+
+// 服务端是否支持 mget（mget 失败而逐条查询成功时记为不支持，之后直接逐条查询）
+let mgetSupported = true;
+
+// 服务端是否支持多操作批量删除（批量请求失败而逐条删除全部成功时记为不支持，之后直接逐条删除）
+let batchDeleteSupported = true;
+
+// 等待合并的按 ID 查询：同一轮事件循环内同一实体（及相同 fetch）的请求合并为一个 mget
+const pendingGets = new Map<string, { ids: Set<string>; promise: Promise<Map<string, any>> }>();
+
 /**
- * 获取实体字段信息
- * @param className 实体类名（如：WqUser）
+ * 批量获取所有实体的字段信息
+ * @returns 类名 -> 字段信息
  */
-export async function getEntityFields(className: string): Promise<EntityFieldsResponse> {
+export async function getAllEntityFields(): Promise<Record<string, EntityFieldsResponse>> {
   const response = await request<{
     code: number;
     message: string;
-    data: EntityFieldsResponse;
+    data: Record<string, EntityFieldsResponse>;
     timestamp: number;
-  }>(`/api/entity/fields/${className}`, {
+  }>(`/api/entity/fields`, {
     method: 'GET',
   });
 
-  // 提取 data 字段
-  return response.data;
+  return response.data || {};
+}
+
+/**
+ * 预加载所有实体的字段信息到缓存
+ * 批量接口不可用时静默失败，回退到按实体单独获取
+ */
+export function preloadEntityFields(): Promise<void> {
+  if (!preloadPromise) {
+    preloadPromise = getAllEntityFields()
+      .then((allFields) => {
+        Object.entries(allFields).forEach(([className, fields]) => {
+          entityFieldsCache.set(className, fields);
+        });
+      })
+      .catch(() => {});
+  }
+  return preloadPromise;
+}
+
+/**
+ * 清空实体字段信息缓存（后端实体结构变更后使用）
+ */
+export function clearEntityFieldsCache(): void {
+  entityFieldsCache.clear();
+  pendingEntityFields.clear();
+  preloadPromise = null;
+}
+
+/**
+ * 获取实体字段信息
+ * 优先读取缓存，首次调用时批量预加载所有实体
+ * @param className 实体类名（如：WqUser）
+ */
+export async function getEntityFields(className: string): Promise<EntityFieldsResponse> {
+  await preloadEntityFields();
+
+  const cached = entityFieldsCache.get(className);
+  if (cached) {
+    return cached;
+  }
+
+  let pending = pendingEntityFields.get(className);
+  if (!pending) {
+    pending = request<{
+      code: number;
+      message: string;
+      data: EntityFieldsResponse;
+      timestamp: number;
+    }>(`/api/entity/fields/${className}`, {
+      method: 'GET',
+    })
+      .then((response) => {
+        // 提取 data 字段，只缓存成功的结果
+        if (response.data) {
+          entityFieldsCache.set(className, response.data);
+        }
+        return response.data;
+      })
+      .finally(() => {
+        pendingEntityFields.delete(className);
+      });
+    pendingEntityFields.set(className, pending);
+  }
+
+  return pending;
 }
 
 /**
  * 分页查询实体数据
  * @param entity 实体名称（小写，如：wquser）
  * @param params 查询参数
+ *
+ * 传入 cursor 时使用游标（seek）分页：按 (排序字段, _id) 定位下一页，
+ * 不再使用 OFFSET，首页传空字符串，后续页传上一页返回的 nextCursor
+ *
+ * 传入 readOnly 时结果只用于展示，服务端不需要为返回的实体维护持久化上下文
+ *
+ * 传入 noCache 时跳过近端缓存，用于写入前需要最新数据的校验（如下单前校验优惠券余量）
  */
 export async function queryEntity<T = any>(
   entity: string,
@@ -75,21 +219,38 @@ export async function queryEntity<T = any>(
     pageSize?: number;
     conditions?: Record<string, any>;
     sort?: Record<string, 'asc' | 'desc'>;
+    fetch?: string[];
+    cursor?: string;
+    countMode?: CountMode;
+    readOnly?: boolean;
+    noCache?: boolean;
   },
 ): Promise<RequestData<T>> {
-  const { current, pageSize, conditions, sort } = params;
+  const { current, pageSize, conditions, sort, fetch: fetchFields, cursor, countMode, readOnly, noCache } = params;
 
   const payload: BatchRequestParams = {
     entity,
     action: 'query',
   };
 
-  // 只有提供了分页参数才添加分页
-  if (current !== undefined && pageSize !== undefined) {
+  // 游标分页只需要 pageSize，其余情况只有提供了分页参数才添加分页
+  if (cursor !== undefined && pageSize !== undefined) {
+    payload.cursor = cursor;
+    payload.pageSize = pageSize;
+  } else if (current !== undefined && pageSize !== undefined) {
     payload.pageNum = current;
     payload.pageSize = pageSize;
   }
 
+  if (countMode) {
+    payload.countMode = countMode;
+  }
+
+  // 只读查询：服务端使用只读事务，跳过脏检查和快照
+  if (readOnly) {
+    payload.readOnly = true;
+  }
+
   if (conditions && Object.keys(conditions).length > 0) {
     payload.conditions = conditions;
   }
@@ -98,36 +259,60 @@ export async function queryEntity<T = any>(
     payload.sort = sort;
   }
 
-  const response = await request<{
-    code: number;
-    message: string;
-    data: {
-      content: T[];
-      totalElements: number;
-      totalPages: number;
-      number: number;
-      size: number;
-      numberOfElements: number;
-      first: boolean;
-      last: boolean;
-      empty: boolean;
-    };
-    timestamp: number;
-  }>(`/api/batch`, {
-    method: 'POST',
-    headers: {
-      'Content-Type': 'application/json',
-    },
-    data: payload,
-  });
+  // 只查询需要的字段，服务端按字段投影查询，不加载完整实体
+  if (fetchFields && fetchFields.length > 0) {
+    payload.fetch = fetchFields;
+  }
+
+  const load = async (): Promise<RequestData<T>> => {
+    const response = await request<{
+      code: number;
+      message: string;
+      data: {
+        content: T[];
+        totalElements: number;
+        totalPages: number;
+        number: number;
+        size: number;
+        numberOfElements: number;
+        first: boolean;
+        last: boolean;
+        empty: boolean;
+        nextCursor?: string | null;
+      };
+      timestamp: number;
+    }>(`/api/batch`, {
+      method: 'POST',
+      headers: {
+        'Content-Type': 'application/json',
+      },
+      data: payload,
+    });
 
-  // 后端返回的是 Spring Data JPA 的 Page 格式
-  // data.content 是数据数组，data.totalElements 是总记录数
-  return {
-    data: response.data?.content || [],
-    success: response.code === 200,
-    total: response.data?.totalElements || 0,
+    // 后端返回的是 Spring Data JPA 的 Page 格式
+    // data.content 是数据数组，data.totalElements 是总记录数
+    // 不分页时 data 直接是数据数组
+    if (Array.isArray(response.data)) {
+      return {
+        data: response.data,
+        success: response.code === 200,
+        total: response.data.length,
+      };
+    }
+
+    return {
+      data: response.data?.content || [],
+      success: response.code === 200,
+      total: response.data?.totalElements || 0,
+      nextCursor: response.data?.nextCursor ?? undefined,
+    };
   };
+
+  // 商品、服务等目录数据走近端缓存，只缓存成功的结果
+  if (isNearCached(entity) && !noCache) {
+    return cachedQuery(entity, payload, load, (result) => result.success);
+  }
+  return load();
 }
 
 /**
@@ -151,6 +336,7 @@ export async function createEntity(
     },
   });
 
+  invalidateNearCache(entity);
   return response.code === 200;
 }
 
@@ -178,45 +364,210 @@ export async function updateEntity(
     },
   });
 
+  invalidateNearCache(entity);
   return response.code === 200;
 }
 
+/**
+ * 按主键查询单条记录（mget 不可用时使用，与原有的详情查询相同）
+ */
+async function loadById(entity: string, id: string, fetchFields?: string[]): Promise<any | null> {
+  const result = await queryEntity<any>(entity, {
+    current: 1,
+    pageSize: 1,
+    conditions: { _id: id },
+    fetch: fetchFields,
+    readOnly: true,
+  });
+  return result.data[0] ?? null;
+}
+
+/**
+ * 按主键批量查询，mget 请求失败时退化为逐条查询
+ * 逐条查询也失败时抛出错误（认证失败、网络错误等）
+ */
+async function loadByIds(entity: string, ids: string[], fetchFields?: string[]): Promise<Map<string, any>> {
+  const records = new Map<string, any>();
+  // 按 _id 对应结果，投影查询时也需要返回主键
+  if (fetchFields && !fetchFields.includes('_id')) {
+    fetchFields = [...fetchFields, '_id'];
+  }
+
+  for (let i = 0; i < ids.length; i += MGET_CHUNK_SIZE) {
+    const chunk = ids.slice(i, i + MGET_CHUNK_SIZE);
+    let list: any[] | null = null;
+
+    if (mgetSupported) {
+      try {
+        const response = await request<BatchResponse<any[]>>(`/api/batch`, {
+          method: 'POST',
+          headers: {
+            'Content-Type': 'application/json',
+          },
+          data: {
+            entity,
+            action: 'mget',
+            ids: chunk,
+            ...(fetchFields ? { fetch: fetchFields } : {}),
+          },
+        });
+        if (response?.code === 200 && Array.isArray(response.data)) {
+          list = response.data;
+        }
+      } catch (error) {
+        // 逐条查询
+      }
+    }
+
+    if (!list) {
+      list = await Promise.all(chunk.map((id) => loadById(entity, id, fetchFields)));
+      // mget 失败而逐条查询成功，说明服务端不支持 mget
+      mgetSupported = false;
+    }
+
+    list.forEach((record) => {
+      if (record?._id) {
+        records.set(record._id, record);
+      }
+    });
+  }
+
+  return records;
+}
+
+/**
+ * 加入等待合并的按 ID 查询
+ */
+function enqueueGet(entity: string, ids: string[], fetchFields?: string[]): Promise<Map<string, any>> {
+  const key = `${entity}|${fetchFields ? fetchFields.join(',') : ''}`;
+  let pending = pendingGets.get(key);
+  if (!pending) {
+    const idSet = new Set<string>();
+    pending = {
+      ids: idSet,
+      // 等当前同步代码中的其他调用都加入后再发出请求
+      promise: Promise.resolve().then(() => {
+        pendingGets.delete(key);
+        return loadByIds(entity, Array.from(idSet), fetchFields);
+      }),
+    };
+    pendingGets.set(key, pending);
+  }
+  ids.forEach((id) => pending!.ids.add(id));
+  return pending.promise;
+}
+
+/**
+ * 按 ID 批量查询实体记录（mget：直接按主键查询，不分页、不统计总数）
+ * 同一时刻发起的多个查询会合并为一个请求
+ * @param entity 实体名称（小写，如：wquser）
+ * @param ids 记录ID列表
+ * @param fetchFields 只查询的字段（可选）
+ * @returns 查询到的记录（顺序与 ids 一致，不存在的记录跳过）
+ */
+export async function getEntitiesByIds<T = any>(
+  entity: string,
+  ids: string[],
+  fetchFields?: string[],
+): Promise<T[]> {
+  const uniqueIds = Array.from(new Set(ids.filter(Boolean)));
+  if (uniqueIds.length === 0) {
+    return [];
+  }
+
+  const load = (id: string): Promise<T | null> =>
+    enqueueGet(entity, [id], fetchFields).then((records) => records.get(id) ?? null);
+
+  // 商品、服务等目录数据按单条记录缓存
+  const records = await Promise.all(
+    uniqueIds.map((id) =>
+      isNearCached(entity)
+        ? cachedQuery(entity, { action: 'get', id, fetch: fetchFields }, () => load(id), (record) => !!record)
+        : load(id),
+    ),
+  );
+
+  const byId = new Map<string, T>();
+  uniqueIds.forEach((id, index) => {
+    if (records[index]) {
+      byId.set(id, records[index]!);
+    }
+  });
+  return ids.filter((id) => byId.has(id)).map((id) => byId.get(id)!);
+}
+
 /**
  * 查询单个实体记录详情
  * @param entity 实体名称（小写，如：wquser）
  * @param id 记录ID
+ * @returns 记录不存在时返回 null；查询失败时抛出错误
  */
 export async function getEntityById<T = any>(
   entity: string,
   id: string,
 ): Promise<T | null> {
-  try {
-    const response = await request<BatchResponse<T>>(`/api/batch`, {
-      method: 'POST',
-      headers: {
-        'Content-Type': 'application/json',
-      },
-      data: {
-        entity,
-        action: 'query',
-        conditions: { _id: id },
-        pageNum: 1,
-        pageSize: 1,
-      },
-    });
+  const [record] = await getEntitiesByIds<T>(entity, [id]);
+  return record ?? null;
+}
 
-    if (response.code === 200 && response.data) {
-      // 处理返回的数据格式（可能是数组或对象）
-      const data = response.data as any;
-      if (Array.isArray(data.content) && data.content.length > 0) {
-        return data.content[0];
-      }
-      return data as T;
-    }
-    return null;
-  } catch (error) {
-    return null;
+/**
+ * 批量执行多个操作（可跨实体）
+ * 所有操作在一次请求、同一个事务中按顺序执行，任一操作失败则整体回滚
+ * @param operations 操作列表
+ * @returns 每个操作的执行结果（顺序与 operations 一致）
+ */
+export async function batchEntities<T = any>(
+  operations: BatchOperation[],
+): Promise<BatchOperationResult<T>[]> {
+  if (operations.length === 0) {
+    return [];
+  }
+
+  const response = await request<BatchResponse<BatchOperationResult<T>[]>>(`/api/batch`, {
+    method: 'POST',
+    headers: {
+      'Content-Type': 'application/json',
+    },
+    data: {
+      operations,
+    },
+  });
+
+  // 清除涉及实体的近端缓存（校验操作不修改数据）
+  new Set(
+    operations.filter((operation) => operation.action !== 'check').map((operation) => operation.entity),
+  ).forEach(invalidateNearCache);
+
+  if (response.code !== 200) {
+    const error = new Error(response.message || '批量操作失败') as Error & { code?: number };
+    error.code = response.code;
+    throw error;
   }
+
+  return response.data || [];
+}
+
+/**
+ * 逻辑删除实体记录（删除标记设为 1，记录保留在表中）
+ * @param entity 实体名称（小写，如：wquser）
+ * @param id 记录ID或ID数组
+ * @param field 删除标记字段
+ */
+export async function softDeleteEntity(
+  entity: string,
+  id: string | string[],
+  field: string = 'deleted',
+): Promise<boolean> {
+  const ids = Array.isArray(id) ? id : [id];
+  const results = await batchEntities(
+    ids.map((singleId) => ({
+      entity,
+      action: 'update' as const,
+      id: singleId,
+      data: { [field]: 1 },
+    })),
+  );
+  return results.every((result) => result.code === 200);
 }
 
 /**
@@ -228,27 +579,38 @@ export async function deleteEntity(
   entity: string,
   id: string | string[],
 ): Promise<boolean> {
-  // 如果是批量删除，需要逐个删除
+  // 批量删除：一次请求、一个事务完成；服务端不支持 operations 时逐条删除
   if (Array.isArray(id)) {
-    await Promise.all(
-      id.map((singleId) =>
-        request<BatchResponse>(`/api/batch`, {
-          method: 'POST',
-          headers: {
-            'Content-Type': 'application/json',
-          },
-          data: {
+    if (batchDeleteSupported) {
+      try {
+        const results = await batchEntities(
+          id.map((singleId) => ({
             entity,
-            action: 'delete',
+            action: 'delete' as const,
             id: singleId,
-          },
-        }),
-      ),
-    );
-    return true;
+          })),
+        );
+        return results.every((result) => result.code === 200);
+      } catch (error) {
+        const results = await Promise.all(id.map((singleId) => deleteOne(entity, singleId)));
+        // 批量请求失败但逐条删除全部成功，说明是服务端不支持批量请求而不是数据问题
+        if (results.every(Boolean)) {
+          batchDeleteSupported = false;
+        }
+        return results.every(Boolean);
+      }
+    }
+    const results = await Promise.all(id.map((singleId) => deleteOne(entity, singleId)));
+    return results.every(Boolean);
   }
 
-  // 单个删除
+  return deleteOne(entity, id);
+}
+
+/**
+ * 删除单条记录
+ */
+async function deleteOne(entity: string, id: string): Promise<boolean> {
   const response = await request<BatchResponse>(`/api/batch`, {
     method: 'POST',
     headers: {
@@ -261,5 +623,6 @@ export async function deleteEntity(
     },
   });
 
+  invalidateNearCache(entity);
   return response.code === 200;
 }
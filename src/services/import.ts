@@ -0,0 +1,200 @@
+import { batchEntities } from './genericEntity';
+import { generateId } from '@/utils/id';
+import type { ImportRecord } from '@/utils/import';
+
+/**
+ * 实体数据批量导入
+ *
+ * 文件按行流式解析、逐行校验并在前端生成 ID，每 chunkSize 行合并为一个批量请求（一个事务）提交，
+ * 上一块提交的同时解析下一块；某一块提交失败时二分重试，把出错的行单独找出来，其余行照常导入
+ */
+
+// 每个批量请求的行数
+const DEFAULT_CHUNK_SIZE = 500;
+
+// 最多保留的错误行数（避免大文件全部出错时占用大量内存）
+const MAX_ERRORS = 1000;
+
+/**
+ * 导入出错的行
+ */
+export interface ImportError {
+  row: number;
+  message: string;
+}
+
+/**
+ * 导入结果
+ */
+export interface ImportResult {
+  total: number;
+  succeeded: number;
+  failed: number;
+  errors: ImportError[];
+}
+
+/**
+ * 导入参数
+ */
+export interface ImportOptions {
+  // 每个批量请求的行数，默认 500
+  chunkSize?: number;
+  // 校验并转换一行数据，返回字符串表示校验失败的原因
+  prepare?: (record: Record<string, any>) => Record<string, any> | string;
+  // 数据包装字段（与 dynamicEntity.dataField 一致）
+  dataField?: string;
+  // 进度回调
+  onProgress?: (result: ImportResult) => void;
+}
+
+/**
+ * 实体导入的扩展点（由页面按实体提供，每次导入创建一份，可以在两个回调之间保存状态）
+ */
+export interface ImportHooks {
+  // 在字段类型转换之后执行，返回字符串表示该行校验失败的原因
+  transform?: (data: Record<string, any>) => Record<string, any> | string;
+  // 全部行提交后执行（如整理导入数据之间的约束）
+  complete?: (result: ImportResult) => Promise<void> | void;
+}
+
+interface PreparedRow {
+  row: number;
+  data: Record<string, any>;
+}
+
+/**
+ * 根据实体字段信息创建默认的行转换函数
+ * CSV 中的值都是字符串，按字段类型转换为数字/布尔值，并校验必填字段
+ * @param entityFields 实体字段信息
+ * @param requiredFields 必填字段
+ */
+export function createRecordConverter(
+  entityFields: Record<string, { type?: string; typeName?: string }>,
+  requiredFields: string[] = [],
+): (record: Record<string, any>) => Record<string, any> | string {
+  return (record) => {
+    if (record.__parseError) return record.__parseError;
+
+    const missing = requiredFields.filter(
+      (field) => record[field] === undefined || record[field] === null || record[field] === '',
+    );
+    if (missing.length > 0) {
+      return `缺少必填字段：${missing.join('、')}`;
+    }
+
+    const data: Record<string, any> = {};
+    for (const [field, value] of Object.entries(record)) {
+      const fieldInfo = entityFields[field];
+      // 不是实体字段的列直接忽略
+      if (!fieldInfo && field !== '_id') continue;
+      if (!fieldInfo || typeof value !== 'string') {
+        data[field] = value;
+        continue;
+      }
+
+      const typeName = fieldInfo.typeName || fieldInfo.type || '';
+      if (typeName.includes('Integer') || typeName.includes('int') || typeName.includes('Long')) {
+        const num = Number(value);
+        if (!Number.isInteger(num)) return `字段 ${field} 应为整数：${value}`;
+        data[field] = num;
+      } else if (typeName.includes('Double') || typeName.includes('Float')) {
+        const num = Number(value);
+        if (isNaN(num)) return `字段 ${field} 应为数字：${value}`;
+        data[field] = num;
+      } else if (typeName.includes('BigDecimal')) {
+        const num = Number(value);
+        if (isNaN(num)) return `字段 ${field} 应为数字：${value}`;
+        // 与表单提交一致，整数格式化为 "12.0"
+        data[field] = num % 1 === 0 ? num.toFixed(1) : String(num);
+      } else if (typeName.includes('Boolean') || typeName.includes('boolean')) {
+        data[field] = value === 'true' || value === '1';
+      } else if (
+        (typeName.includes('List') || typeName.includes('Map') || typeName.includes('[]')) &&
+        /^[[{]/.test(value)
+      ) {
+        try {
+          data[field] = JSON.parse(value);
+        } catch (error) {
+          return `字段 ${field} 不是有效的 JSON`;
+        }
+      } else {
+        data[field] = value;
+      }
+    }
+    return data;
+  };
+}
+
+/**
+ * 批量导入
+ * @param entity 实体名称（小写）
+ * @param records 流式读取的行（见 readImportRecords）
+ */
+export async function importEntities(
+  entity: string,
+  records: AsyncIterable<ImportRecord>,
+  options: ImportOptions = {},
+): Promise<ImportResult> {
+  const chunkSize = options.chunkSize || DEFAULT_CHUNK_SIZE;
+  const result: ImportResult = { total: 0, succeeded: 0, failed: 0, errors: [] };
+
+  const fail = (row: number, message: string) => {
+    result.failed++;
+    if (result.errors.length < MAX_ERRORS) {
+      result.errors.push({ row, message });
+    }
+  };
+
+  // 提交一块数据，失败时二分定位出错的行
+  const submit = async (rows: PreparedRow[]): Promise<void> => {
+    try {
+      await batchEntities(
+        rows.map(({ data }) => ({
+          entity,
+          action: 'create' as const,
+          data: options.dataField ? { [options.dataField]: data } : data,
+        })),
+      );
+      result.succeeded += rows.length;
+    } catch (error: any) {
+      // 网络异常不是数据问题，二分重试没有意义
+      if (error?.request && !error?.response) throw error;
+      if (rows.length === 1) {
+        fail(rows[0].row, error?.message || '导入失败');
+        return;
+      }
+      const middle = Math.ceil(rows.length / 2);
+      await submit(rows.slice(0, middle));
+      await submit(rows.slice(middle));
+    }
+    options.onProgress?.({ ...result });
+  };
+
+  let chunk: PreparedRow[] = [];
+  // 上一块的提交请求，与下一块的解析并行
+  let inflight: Promise<void> = Promise.resolve();
+
+  for await (const { row, record } of records) {
+    result.total++;
+    const prepared = options.prepare ? options.prepare(record) : record;
+    if (typeof prepared === 'string') {
+      fail(row, prepared);
+      continue;
+    }
+    chunk.push({ row, data: { ...prepared, _id: prepared._id || generateId() } });
+
+    if (chunk.length >= chunkSize) {
+      const rows = chunk;
+      chunk = [];
+      await inflight;
+      inflight = submit(rows);
+    }
+  }
+
+  await inflight;
+  if (chunk.length > 0) {
+    await submit(chunk);
+  }
+  options.onProgress?.({ ...result });
+  return result;
+}
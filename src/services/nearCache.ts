@@ -0,0 +1,205 @@
+import { TinyLfuCache } from '@/utils/tinyLfuCache';
+import type { CacheStats } from '@/utils/tinyLfuCache';
+
+/**
+ * 目录数据近端缓存
+ *
+ * 商品、服务、服务优惠券的查询结果按请求参数缓存在页面内存中，
+ * 同一实体有任何新增/修改/删除时清除该实体的全部缓存，
+ * 并通过失效通道通知同一浏览器中打开的其他页面
+ */
+
+// 缓存的实体及有效期（实体名小写）
+const ENTITY_TTL: Record<string, number> = {
+  product: 60 * 1000,
+  wqservice: 60 * 1000,
+  servicecoupon: 30 * 1000,
+};
+
+// 最大缓存条数（按查询参数计）
+const MAX_ENTRIES = 500;
+
+/**
+ * 缓存失效通道（多页面/多节点之间同步失效）
+ */
+export interface InvalidationChannel {
+  publish: (entity: string) => void;
+  subscribe: (listener: (entity: string) => void) => () => void;
+}
+
+/**
+ * 内存失效通道（只在当前页面内通知，用于测试或不支持 BroadcastChannel 的环境）
+ */
+export function createMemoryChannel(): InvalidationChannel {
+  const listeners = new Set<(entity: string) => void>();
+  return {
+    publish: (entity) => listeners.forEach((listener) => listener(entity)),
+    subscribe: (listener) => {
+      listeners.add(listener);
+      return () => {
+        listeners.delete(listener);
+      };
+    },
+  };
+}
+
+/**
+ * BroadcastChannel 失效通道（同一浏览器中同源的所有页面）
+ */
+export function createBroadcastChannel(name: string = 'wq-near-cache'): InvalidationChannel {
+  if (typeof BroadcastChannel === 'undefined') {
+    return createMemoryChannel();
+  }
+  const channel = new BroadcastChannel(name);
+  return {
+    // 只通知其他页面，当前页面在调用 publish 前已自行清除
+    publish: (entity) => channel.postMessage(entity),
+    subscribe: (listener) => {
+      const handler = (event: MessageEvent) => listener(String(event.data));
+      channel.addEventListener('message', handler);
+      return () => channel.removeEventListener('message', handler);
+    },
+  };
+}
+
+interface EntityCounter {
+  hits: number;
+  misses: number;
+}
+
+const cache = new TinyLfuCache<any>(MAX_ENTRIES);
+const pending = new Map<string, Promise<any>>();
+// 每个实体的版本号，加载期间实体被修改时不写入缓存，避免缓存旧数据
+const generations = new Map<string, number>();
+const counters = new Map<string, EntityCounter>();
+
+let channel: InvalidationChannel | null = null;
+let unsubscribe: (() => void) | null = null;
+// 其他页面发出失效通知时的监听者
+const remoteListeners = new Set<(entity: string) => void>();
+
+function normalize(entity: string): string {
+  return String(entity || '').toLowerCase();
+}
+
+function counterOf(entity: string): EntityCounter {
+  let counter = counters.get(entity);
+  if (!counter) {
+    counter = { hits: 0, misses: 0 };
+    counters.set(entity, counter);
+  }
+  return counter;
+}
+
+function clearEntity(entity: string) {
+  generations.set(entity, (generations.get(entity) || 0) + 1);
+  cache.deleteWhere((key) => key.startsWith(`${entity}|`));
+}
+
+/**
+ * 设置失效通道（默认使用 BroadcastChannel）
+ */
+export function setInvalidationChannel(next: InvalidationChannel): void {
+  unsubscribe?.();
+  channel = next;
+  unsubscribe = channel.subscribe((entity) => {
+    const name = normalize(entity);
+    clearEntity(name);
+    remoteListeners.forEach((listener) => listener(name));
+  });
+}
+
+function getChannel(): InvalidationChannel {
+  if (!channel) {
+    setInvalidationChannel(createBroadcastChannel());
+  }
+  return channel!;
+}
+
+/**
+ * 订阅其他页面发出的失效通知（如其他页面新增了商品），用于清除基于同一实体建立的本地索引
+ * @returns 取消订阅函数
+ */
+export function onRemoteInvalidation(listener: (entity: string) => void): () => void {
+  getChannel();
+  remoteListeners.add(listener);
+  return () => {
+    remoteListeners.delete(listener);
+  };
+}
+
+/**
+ * 实体是否使用近端缓存
+ */
+export function isNearCached(entity: string): boolean {
+  return ENTITY_TTL[normalize(entity)] !== undefined;
+}
+
+/**
+ * 带缓存的查询，相同参数的并发请求共用一个请求
+ * @param entity 实体名称
+ * @param payload 请求参数（作为缓存键）
+ * @param loader 实际查询函数
+ * @param cacheable 判断结果是否可以缓存（如只缓存成功的结果）
+ */
+export async function cachedQuery<T>(
+  entity: string,
+  payload: Record<string, any>,
+  loader: () => Promise<T>,
+  cacheable: (result: T) => boolean = () => true,
+): Promise<T> {
+  const name = normalize(entity);
+  const key = `${name}|${JSON.stringify({ ...payload, entity: name })}`;
+  getChannel();
+
+  const cached = cache.get(key);
+  if (cached !== undefined) {
+    counterOf(name).hits++;
+    return cached;
+  }
+  counterOf(name).misses++;
+
+  let request = pending.get(key);
+  if (!request) {
+    const generation = generations.get(name) || 0;
+    request = loader()
+      .then((result) => {
+        if (cacheable(result) && generation === (generations.get(name) || 0)) {
+          cache.set(key, result, ENTITY_TTL[name]);
+        }
+        return result;
+      })
+      .finally(() => {
+        pending.delete(key);
+      });
+    pending.set(key, request);
+  }
+  return request;
+}
+
+/**
+ * 实体数据变化后清除缓存并通知其他页面
+ */
+export function invalidateNearCache(entity: string): void {
+  const name = normalize(entity);
+  if (!isNearCached(name)) return;
+  clearEntity(name);
+  getChannel().publish(name);
+}
+
+/**
+ * 近端缓存命中统计
+ * @param entity 实体名称，不传则返回全部实体及整体统计
+ */
+export function getNearCacheStats(entity?: string): {
+  entities: Record<string, EntityCounter & { hitRate: number }>;
+  cache: CacheStats;
+} {
+  const entities: Record<string, EntityCounter & { hitRate: number }> = {};
+  counters.forEach((counter, name) => {
+    if (entity && normalize(entity) !== name) return;
+    const total = counter.hits + counter.misses;
+    entities[name] = { ...counter, hitRate: total === 0 ? 0 : counter.hits / total };
+  });
+  return { entities, cache: cache.stats() };
+}
@@ -0,0 +1,144 @@
+import { getEntityById, isBatchConflict, queryEntity, updateEntity } from './genericEntity';
+import { commitWithStock } from './stock';
+import type { StockItem } from './stock';
+import { OrderStatusEnum } from '@/constants';
+
+/**
+ * 订单明细（order_item 表中的一行）
+ */
+export interface OrderItemRecord {
+  _id?: string;
+  orderId: string;
+  productId: string;
+  productName: string;
+  productPrice: number;
+  quantity: number;
+  subtotal: number;
+}
+
+// Order.items JSON 中保存的明细字段
+const ORDER_ITEM_FIELDS = [
+  '_id',
+  'orderId',
+  'productId',
+  'productName',
+  'productPrice',
+  'quantity',
+  'subtotal',
+];
+
+/**
+ * 查询订单的全部明细（走 idx_order_id 索引）
+ * @param orderId 订单ID
+ */
+export async function queryOrderItems(orderId: string): Promise<OrderItemRecord[]> {
+  const result = await queryEntity<OrderItemRecord>('orderItem', {
+    conditions: { orderId },
+    fetch: ORDER_ITEM_FIELDS,
+    readOnly: true,
+  });
+  return result.data;
+}
+
+/**
+ * 把 order_item 表中的明细同步回订单的 items JSON
+ * order_item 是明细的唯一数据源，Order.items 只作为详情展示的冗余副本，
+ * 每次明细变化后整体重写，下一次同步会覆盖并发修改留下的旧副本
+ * @param orderId 订单ID
+ * @throws 查询或更新失败时抛出，由调用方提示
+ */
+export async function syncOrderItems(orderId: string): Promise<void> {
+  if (!orderId) return;
+  const items = await queryOrderItems(orderId);
+  const success = await updateEntity('order', orderId, { items });
+  if (!success) {
+    throw new Error('同步订单明细失败');
+  }
+}
+
+// 每个批量请求最多包含的订单数
+const BATCH_CHUNK_SIZE = 500;
+
+/**
+ * 订单全部明细占用的库存
+ * @param sign 1 表示扣减，-1 表示归还
+ */
+async function orderStockItems(orderIds: string[], sign: 1 | -1): Promise<StockItem[]> {
+  if (orderIds.length === 0) return [];
+  const items = await queryEntity<Pick<OrderItemRecord, 'productId' | 'quantity'>>('orderItem', {
+    conditions: { orderId: { $in: orderIds } },
+    fetch: ['productId', 'quantity'],
+    readOnly: true,
+  });
+  return items.data.map((item) => ({ productId: item.productId, quantity: sign * (Number(item.quantity) || 0) }));
+}
+
+/**
+ * 修改订单
+ * 手动改为已取消时归还明细占用的库存，从已取消改回其他状态时重新扣减；
+ * 库存变动与订单更新在同一个批量请求中提交，并以读取到的订单状态作为前置条件
+ * @throws InsufficientStockError 撤销取消时库存不足
+ */
+export async function updateOrderWithStock(id: string, data: Record<string, any>): Promise<void> {
+  const previous = await getEntityById<any>('order', id);
+  if (!previous) {
+    throw new Error('订单不存在或已被删除');
+  }
+  const from = Number(previous.status);
+  const to = data.status === undefined ? from : Number(data.status);
+  const wasCancelled = from === OrderStatusEnum.CANCELLED;
+  const isCancelled = to === OrderStatusEnum.CANCELLED;
+
+  if (wasCancelled === isCancelled) {
+    const success = await updateEntity('order', id, data);
+    if (!success) {
+      throw new Error('更新订单失败');
+    }
+    return;
+  }
+
+  try {
+    await commitWithStock(await orderStockItems([id], isCancelled ? -1 : 1), [
+      { entity: 'order', action: 'update', id, data, expect: { status: from } },
+    ]);
+  } catch (error) {
+    if (isBatchConflict(error)) {
+      throw new Error('订单状态已变化，请刷新后重试');
+    }
+    throw error;
+  }
+}
+
+/**
+ * 删除订单，未取消订单的明细占用的库存一并归还（已取消订单的库存已在取消时归还）
+ * @param orderIds 订单ID列表
+ */
+export async function deleteOrdersWithStock(orderIds: string[]): Promise<void> {
+  for (let i = 0; i < orderIds.length; i += BATCH_CHUNK_SIZE) {
+    const chunk = orderIds.slice(i, i + BATCH_CHUNK_SIZE);
+    const orders = await queryEntity<{ _id: string; status: number }>('order', {
+      conditions: { _id: { $in: chunk } },
+      fetch: ['_id', 'status'],
+    });
+    const holding = orders.data
+      .filter((order) => Number(order.status) !== OrderStatusEnum.CANCELLED)
+      .map((order) => order._id);
+
+    try {
+      await commitWithStock(
+        await orderStockItems(holding, -1),
+        orders.data.map((order) => ({
+          entity: 'order',
+          action: 'delete' as const,
+          id: order._id,
+          expect: { status: order.status },
+        })),
+      );
+    } catch (error) {
+      if (isBatchConflict(error)) {
+        throw new Error('订单状态已变化，请刷新后重试');
+      }
+      throw error;
+    }
+  }
+}
@@ -0,0 +1,343 @@
+import dayjs from 'dayjs';
+import {
+  SERVER_NOW,
+  batchEntities,
+  createEntity,
+  getEntitiesByIds,
+  getEntityById,
+  isBatchConflict,
+  updateEntity,
+} from './genericEntity';
+import type { BatchOperation } from './genericEntity';
+import { updateProviderInIndex } from './dispatch';
+import {
+  checkCouponUsable,
+  consumeCouponOperations,
+  releaseCouponOperations,
+} from './couponPricing';
+import { assertSlotAvailable, normalizeTimeSlot, syncSlotOccupancy } from './slot';
+import { ProviderStatusEnum, ServiceOrderStatusEnum } from '@/constants';
+import { generateId } from '@/utils/id';
+
+/**
+ * 服务订单状态机
+ *
+ * 所有状态流转都经过这里：校验流转是否合法、写入对应的时间字段（由服务端填入当前时间），
+ * 每个订单的更新都带上 expect: { status: 原状态 }（乐观并发控制），
+ * 多个订单合并成批量请求提交，成功后发布流转事件
+ */
+
+const { PENDING, PAID, ACCEPTED, IN_SERVICE, TO_REVIEW, COMPLETED, CANCELLED, REFUNDED } =
+  ServiceOrderStatusEnum;
+
+// 每个状态允许流转到的状态
+const TRANSITIONS: Record<number, number[]> = {
+  [PENDING]: [PAID, CANCELLED],
+  [PAID]: [ACCEPTED, CANCELLED, REFUNDED],
+  [ACCEPTED]: [IN_SERVICE, CANCELLED, REFUNDED],
+  [IN_SERVICE]: [TO_REVIEW],
+  [TO_REVIEW]: [COMPLETED],
+  [COMPLETED]: [],
+  [CANCELLED]: [],
+  [REFUNDED]: [],
+};
+
+// 进入某个状态时记录的时间字段
+const TIME_FIELDS: Record<number, string> = {
+  [PAID]: 'payTime',
+  [ACCEPTED]: 'acceptTime',
+  [IN_SERVICE]: 'serviceStartTime',
+  [TO_REVIEW]: 'serviceEndTime',
+  [COMPLETED]: 'completeTime',
+  [CANCELLED]: 'cancelTime',
+};
+
+// 服务人员被占用的状态（离开这些状态时释放服务人员）
+const PROVIDER_BUSY_STATUSES = [ACCEPTED, IN_SERVICE];
+
+// 状态流转需要的订单字段
+export const TRANSITION_FIELDS = [
+  '_id',
+  'status',
+  'providerId',
+  'serviceId',
+  'bookingDate',
+  'timeSlot',
+  'couponId',
+];
+
+// 每个批量请求最多包含的订单数
+const BATCH_CHUNK_SIZE = 500;
+
+/**
+ * 状态流转事件
+ */
+export interface ServiceOrderTransitionEvent {
+  orderId: string;
+  from: number;
+  to: number;
+  order: Record<string, any>;
+}
+
+/**
+ * 批量流转结果
+ */
+export interface TransitionResult {
+  succeeded: string[];
+  skipped: { id: string; reason: string }[];
+}
+
+type TransitionListener = (events: ServiceOrderTransitionEvent[]) => void;
+
+const listeners = new Set<TransitionListener>();
+
+/**
+ * 订阅状态流转事件
+ * @returns 取消订阅函数
+ */
+export function onServiceOrderTransition(listener: TransitionListener): () => void {
+  listeners.add(listener);
+  return () => {
+    listeners.delete(listener);
+  };
+}
+
+/**
+ * 判断状态能否流转
+ */
+export function canTransition(from: number, to: number): boolean {
+  return (TRANSITIONS[Number(from)] || []).includes(Number(to));
+}
+
+/**
+ * 获取状态可以流转到的状态列表
+ */
+export function getNextStatuses(from: number): number[] {
+  return TRANSITIONS[Number(from)] || [];
+}
+
+/**
+ * 校验单个订单能否流转，返回不能流转的原因
+ */
+function checkTransition(order: Record<string, any>, to: number): string | null {
+  if (!canTransition(order.status, to)) {
+    return '当前状态不允许该操作';
+  }
+  if (to === ACCEPTED && !order.providerId) {
+    return '未指定服务人员';
+  }
+  return null;
+}
+
+/**
+ * 生成单个订单流转的批量操作（订单更新 + 需要时释放服务人员）
+ */
+function buildOperations(
+  order: Record<string, any>,
+  to: number,
+  data: Record<string, any>,
+): BatchOperation[] {
+  const from = Number(order.status);
+  const timeField = TIME_FIELDS[to];
+  const operations: BatchOperation[] = [
+    {
+      entity: 'serviceorder',
+      action: 'update',
+      id: order._id,
+      data: { ...data, status: to, ...(timeField ? { [timeField]: SERVER_NOW } : {}) },
+      expect: { status: from },
+    },
+  ];
+
+  if (order.providerId && PROVIDER_BUSY_STATUSES.includes(from) && !PROVIDER_BUSY_STATUSES.includes(to)) {
+    operations.push({
+      entity: 'serviceprovider',
+      action: 'update',
+      id: order.providerId,
+      data: { status: ProviderStatusEnum.AVAILABLE, currentOrderId: null },
+    });
+  }
+  return operations;
+}
+
+/**
+ * 流转成功后同步本地索引（派单索引、时段占用）并通知订阅者
+ */
+function publish(events: ServiceOrderTransitionEvent[]) {
+  events.forEach(({ from, to, order }) => {
+    if (order.providerId && PROVIDER_BUSY_STATUSES.includes(from) && !PROVIDER_BUSY_STATUSES.includes(to)) {
+      updateProviderInIndex(order.providerId, {
+        status: ProviderStatusEnum.AVAILABLE,
+        currentOrderId: null,
+      });
+    }
+    syncSlotOccupancy(order, { ...order, status: to });
+  });
+  listeners.forEach((listener) => listener(events));
+}
+
+/**
+ * 重新读取订单的最新状态（前置条件冲突后使用）
+ */
+async function reloadOrders(ids: string[]): Promise<Record<string, any>[]> {
+  return getEntitiesByIds<any>('serviceorder', ids, TRANSITION_FIELDS);
+}
+
+/**
+ * 提交一批订单的流转，前置条件冲突时重新读取最新状态并重试一次
+ */
+async function commitChunk(
+  orders: Record<string, any>[],
+  to: number,
+  data: Record<string, any>,
+  result: TransitionResult,
+  retry: boolean,
+): Promise<ServiceOrderTransitionEvent[]> {
+  const operations: BatchOperation[] = [];
+  orders.forEach((order) => operations.push(...buildOperations(order, to, data)));
+  // 订单取消/退款时归还优惠券
+  if (to === CANCELLED || to === REFUNDED) {
+    operations.push(
+      ...(await releaseCouponOperations(orders.filter((order) => order.couponId).map((order) => order._id))),
+    );
+  }
+
+  try {
+    await batchEntities(operations);
+  } catch (error) {
+    if (!retry || !isBatchConflict(error)) {
+      throw error;
+    }
+    const latest = await reloadOrders(orders.map((order) => order._id));
+    const valid = latest.filter((order) => {
+      const reason = checkTransition(order, to);
+      if (reason) {
+        result.skipped.push({ id: order._id, reason });
+      }
+      return !reason;
+    });
+    return valid.length > 0 ? commitChunk(valid, to, data, result, false) : [];
+  }
+
+  return orders.map((order) => {
+    result.succeeded.push(order._id);
+    return { orderId: order._id, from: Number(order.status), to, order };
+  });
+}
+
+/**
+ * 批量流转服务订单状态
+ * 不能流转的订单会被跳过并给出原因，其余订单按批提交
+ * @param orders 订单列表（至少包含 TRANSITION_FIELDS 中的字段）
+ * @param to 目标状态
+ * @param data 同时更新的其他字段（如取消原因）
+ */
+export async function transitionServiceOrders(
+  orders: Record<string, any>[],
+  to: number,
+  data: Record<string, any> = {},
+): Promise<TransitionResult> {
+  const result: TransitionResult = { succeeded: [], skipped: [] };
+
+  const valid = orders.filter((order) => {
+    const reason = checkTransition(order, to);
+    if (reason) {
+      result.skipped.push({ id: order._id, reason });
+    }
+    return !reason;
+  });
+
+  for (let i = 0; i < valid.length; i += BATCH_CHUNK_SIZE) {
+    const events = await commitChunk(valid.slice(i, i + BATCH_CHUNK_SIZE), Number(to), data, result, true);
+    if (events.length > 0) {
+      publish(events);
+    }
+  }
+
+  return result;
+}
+
+// 编辑订单时不允许直接修改的字段（状态、状态时间和服务人员）
+const GUARDED_FIELDS = ['status', ...Object.values(TIME_FIELDS), 'providerId', 'providerName', 'providerPhone'];
+
+function omitFields(data: Record<string, any>, fields: string[]): Record<string, any> {
+  const result = { ...data };
+  fields.forEach((field) => delete result[field]);
+  return result;
+}
+
+/**
+ * 预约是否变更（服务、日期或时段任一变化）
+ */
+function isRebooked(before: Record<string, any>, after: Record<string, any>): boolean {
+  return (
+    before.serviceId !== after.serviceId ||
+    !dayjs(before.bookingDate).isSame(dayjs(after.bookingDate), 'day') ||
+    normalizeTimeSlot(before.timeSlot) !== normalizeTimeSlot(after.timeSlot)
+  );
+}
+
+/**
+ * 订单占用的优惠券（用户 + 优惠券，已取消、已退款的订单不占用）
+ */
+function heldCoupon(order: Record<string, any> | null): string | undefined {
+  if (!order?.couponId || [CANCELLED, REFUNDED].includes(Number(order.status))) return undefined;
+  return `${order.userId}|${order.couponId}`;
+}
+
+/**
+ * 后台新增、修改服务订单
+ * 新建或改约时先重新统计时段占用，时段已约满时抛出错误，不写入订单。
+ * 更换优惠券（或下单用户）时重新校验优惠券和用户的领取记录，领取记录改为已使用（以仍未使用为前置条件）
+ * 与订单写入在同一个批量请求中提交，原来使用的优惠券同时归还。
+ * 修改时不写入状态和服务人员字段，这些字段只能通过 transitionServiceOrders 和派单修改
+ * @param data 表单数据
+ * @param id 修改时传入订单ID
+ */
+export async function saveServiceOrder(data: Record<string, any>, id?: string): Promise<void> {
+  if (id) {
+    data = omitFields(data, GUARDED_FIELDS);
+  }
+  const before = id ? await getEntityById<any>('serviceorder', id) : null;
+  if (id && !before) {
+    throw new Error('订单不存在或已被删除');
+  }
+  const after = { ...before, ...data };
+  if (!before || isRebooked(before, after)) {
+    await assertSlotAvailable(after, id);
+  }
+
+  const previousCoupon = heldCoupon(before);
+  const nextCoupon = heldCoupon(after);
+  if (previousCoupon === nextCoupon) {
+    const success = id ? await updateEntity('serviceorder', id, data) : await createEntity('serviceorder', data);
+    if (!success) {
+      throw new Error(id ? '更新订单失败' : '创建订单失败');
+    }
+    return;
+  }
+
+  // 新建时在前端生成订单ID，领取记录需要关联订单
+  const orderId = id || data._id || generateId();
+  const operations: BatchOperation[] = [
+    id
+      ? { entity: 'serviceorder', action: 'update', id, data, expect: { status: before.status } }
+      : { entity: 'serviceorder', action: 'create', data: { ...data, _id: orderId } },
+  ];
+  if (previousCoupon) {
+    operations.push(...(await releaseCouponOperations([orderId])));
+  }
+  if (nextCoupon) {
+    const { userCoupon } = await checkCouponUsable(after.couponId, after.userId);
+    operations.push(...consumeCouponOperations(userCoupon, orderId));
+  }
+
+  try {
+    await batchEntities(operations);
+  } catch (error) {
+    if (isBatchConflict(error)) {
+      throw new Error('优惠券已被使用或订单状态已变化，请刷新后重试');
+    }
+    throw error;
+  }
+}
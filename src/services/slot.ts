@@ -0,0 +1,330 @@
+import dayjs from 'dayjs';
+import { getEntityById, queryEntity } from './genericEntity';
+import { ServiceOrderStatusEnum } from '@/constants';
+
+/**
+ * 服务预约时段容量
+ *
+ * ServiceOrder.timeSlot 是自由填写的字符串，这里统一规范成 "HH:mm-HH:mm" 时段，
+ * 并按服务维护一张「日期 + 时段 -> 已预约数」的占用表：
+ * 一次查询加载未来 N 天的全部预约，之后日历渲染、下单校验都只查内存，
+ * 下单、取消成功后增量更新占用表。
+ * 历史订单的时段不一定是标准时段，按与标准时段的重叠关系计入占用（如 "09:00-11:00" 同时占用前两个时段）。
+ * 新建和改约只接受标准时段，写入前由 assertSlotAvailable 重新统计当天的预约，占用表只用于展示
+ */
+
+/**
+ * 标准预约时段
+ */
+export const TIME_SLOTS = [
+  '08:00-10:00',
+  '10:00-12:00',
+  '14:00-16:00',
+  '16:00-18:00',
+  '18:00-20:00',
+];
+
+/**
+ * 单个时段的容量
+ */
+export interface SlotAvailability {
+  timeSlot: string;
+  booked: number;
+  capacity: number;
+  available: number;
+}
+
+/**
+ * 某一天的时段容量
+ */
+export interface DayAvailability {
+  date: string;
+  slots: SlotAvailability[];
+}
+
+interface OccupancyTable {
+  from: string;
+  to: string;
+  // key: YYYY-MM-DD|HH:mm-HH:mm
+  counts: Map<string, number>;
+  // 单个时段可接的订单数
+  capacity: number;
+  loadedAt: number;
+}
+
+// 占用表有效期，过期后重新加载（其他端下单不会通知到当前页面）
+const TABLE_TTL = 60 * 1000;
+
+// 不占用时段的订单状态
+const RELEASED_STATUSES = [ServiceOrderStatusEnum.CANCELLED, ServiceOrderStatusEnum.REFUNDED];
+
+const occupancyTables = new Map<string, OccupancyTable>();
+const pendingTables = new Map<string, Promise<OccupancyTable>>();
+
+function formatDate(date: any): string {
+  return dayjs(date).format('YYYY-MM-DD');
+}
+
+function padTime(time: string, afternoon: boolean = false): string {
+  const [hour, minute = '00'] = time.split(':');
+  // "下午3点" 这类 12 小时制写法换算为 24 小时制
+  const hours = afternoon && Number(hour) < 12 ? Number(hour) + 12 : Number(hour);
+  return `${String(hours).padStart(2, '0')}:${minute.padStart(2, '0')}`;
+}
+
+/**
+ * 规范化预约时段
+ * "8:00~10:00"、"08:00 - 10:00"、"8点-10点" 等统一为 "08:00-10:00"，"下午3点-5点" 统一为 "15:00-17:00"，无法识别时原样返回
+ */
+export function normalizeTimeSlot(timeSlot: string): string {
+  if (!timeSlot) return '';
+  const text = String(timeSlot)
+    .trim()
+    .replace(/[：]/g, ':')
+    .replace(/(\d{1,2})点半/g, '$1:30')
+    .replace(/(\d{1,2})点/g, '$1:00');
+  const match = text.match(/(\d{1,2}(?::\d{2})?)\s*[-~～至到]\s*(\d{1,2}(?::\d{2})?)/);
+  if (!match) return text;
+  const afternoon = /下午|晚上|傍晚/.test(text);
+  return `${padTime(match[1], afternoon)}-${padTime(match[2], afternoon)}`;
+}
+
+// 只写了时间段名称的历史数据对应的时间范围
+const NAMED_RANGES: [RegExp, string][] = [
+  [/全天/, '00:00-24:00'],
+  [/上午|早上/, '08:00-12:00'],
+  [/中午/, '12:00-14:00'],
+  [/下午/, '14:00-18:00'],
+  [/晚上|傍晚/, '18:00-20:00'],
+];
+
+/**
+ * 时段的起止时间（当天第几分钟），无法识别时返回 undefined
+ */
+function slotRange(timeSlot: string): [number, number] | undefined {
+  let normalized = normalizeTimeSlot(timeSlot);
+  const named = NAMED_RANGES.find(([pattern]) => pattern.test(normalized));
+  if (named && !/\d/.test(normalized)) {
+    normalized = named[1];
+  }
+  const match = normalized.match(/^(\d{2}):(\d{2})-(\d{2}):(\d{2})$/);
+  if (!match) return undefined;
+  const start = Number(match[1]) * 60 + Number(match[2]);
+  const end = Number(match[3]) * 60 + Number(match[4]);
+  return end > start ? [start, end] : undefined;
+}
+
+function slotMinutes(timeSlot: string): number {
+  const range = slotRange(timeSlot);
+  return range ? range[1] - range[0] : 120;
+}
+
+/**
+ * 订单时段占用的标准时段
+ * 标准时段直接返回自身，其他时段返回与之重叠的标准时段，无法识别时不占用任何标准时段
+ */
+export function coveredSlots(timeSlot: string): string[] {
+  const normalized = normalizeTimeSlot(timeSlot);
+  if (TIME_SLOTS.includes(normalized)) return [normalized];
+  const range = slotRange(normalized);
+  if (!range) return [];
+  return TIME_SLOTS.filter((slot) => {
+    const [start, end] = slotRange(slot)!;
+    return start < range[1] && end > range[0];
+  });
+}
+
+/**
+ * 计算单个时段可接的订单数
+ * 同一时段可并行服务 servicePeople 单，每单耗时 duration 分钟
+ */
+function slotCapacity(service: any, timeSlot: string = TIME_SLOTS[0]): number {
+  const people = Math.max(1, Number(service?.servicePeople) || 1);
+  const duration = Number(service?.duration) || 0;
+  const rounds = duration > 0 ? Math.max(1, Math.floor(slotMinutes(timeSlot) / duration)) : 1;
+  return people * rounds;
+}
+
+function slotKey(date: string, timeSlot: string): string {
+  return `${date}|${timeSlot}`;
+}
+
+/**
+ * 累加订单占用的各个标准时段
+ */
+function countOrder(counts: Map<string, number>, date: string, timeSlot: string, delta: number) {
+  coveredSlots(timeSlot).forEach((slot) => {
+    const key = slotKey(date, slot);
+    counts.set(key, Math.max(0, (counts.get(key) || 0) + delta));
+  });
+}
+
+async function loadOccupancyTable(serviceId: string, from: string, to: string): Promise<OccupancyTable> {
+  const [service, orders] = await Promise.all([
+    getEntityById<any>('wqservice', serviceId),
+    // 一次范围查询取回整个日期区间的预约（走 idx_booking_date），只取计数需要的字段
+    queryEntity<any>('serviceorder', {
+      conditions: {
+        serviceId,
+        bookingDate: { $gte: from, $lte: `${to} 23:59:59` },
+      },
+      fetch: ['bookingDate', 'timeSlot', 'status'],
+      readOnly: true,
+    }),
+  ]);
+
+  const counts = new Map<string, number>();
+  orders.data.forEach((order) => {
+    if (RELEASED_STATUSES.includes(Number(order.status))) return;
+    countOrder(counts, formatDate(order.bookingDate), order.timeSlot, 1);
+  });
+
+  return { from, to, counts, capacity: slotCapacity(service), loadedAt: Date.now() };
+}
+
+async function getOccupancyTable(serviceId: string, from: string, to: string): Promise<OccupancyTable> {
+  const table = occupancyTables.get(serviceId);
+  if (table && table.from <= from && table.to >= to && Date.now() - table.loadedAt < TABLE_TTL) {
+    return table;
+  }
+
+  const pendingKey = `${serviceId}|${from}|${to}`;
+  let pending = pendingTables.get(pendingKey);
+  if (!pending) {
+    pending = loadOccupancyTable(serviceId, from, to)
+      .then((loaded) => {
+        occupancyTables.set(serviceId, loaded);
+        return loaded;
+      })
+      .finally(() => {
+        pendingTables.delete(pendingKey);
+      });
+    pendingTables.set(pendingKey, pending);
+  }
+  return pending;
+}
+
+/**
+ * 查询服务未来 N 天每个时段的剩余容量（只发一次查询）
+ * @param serviceId 服务ID
+ * @param fromDate 开始日期，默认今天
+ * @param days 天数，默认 7 天
+ */
+export async function getSlotAvailability(
+  serviceId: string,
+  fromDate: any = dayjs(),
+  days: number = 7,
+): Promise<DayAvailability[]> {
+  const start = dayjs(fromDate).startOf('day');
+  const from = start.format('YYYY-MM-DD');
+  const to = start.add(days - 1, 'day').format('YYYY-MM-DD');
+  const table = await getOccupancyTable(serviceId, from, to);
+
+  const result: DayAvailability[] = [];
+  for (let i = 0; i < days; i++) {
+    const date = start.add(i, 'day').format('YYYY-MM-DD');
+    result.push({
+      date,
+      slots: TIME_SLOTS.map((timeSlot) => {
+        const booked = table.counts.get(slotKey(date, timeSlot)) || 0;
+        return {
+          timeSlot,
+          booked,
+          capacity: table.capacity,
+          available: Math.max(0, table.capacity - booked),
+        };
+      }),
+    });
+  }
+  return result;
+}
+
+/**
+ * 增量更新时段占用（下单 +1，取消/退款 -1）
+ * 占用表未加载或不包含该日期时无需处理，下次查询会重新加载
+ */
+export function adjustSlotOccupancy(
+  serviceId: string,
+  bookingDate: any,
+  timeSlot: string,
+  delta: number,
+): void {
+  const table = occupancyTables.get(serviceId);
+  if (!table || !bookingDate || !timeSlot) return;
+  const date = formatDate(bookingDate);
+  if (date < table.from || date > table.to) return;
+  countOrder(table.counts, date, timeSlot, delta);
+}
+
+/**
+ * 写入前校验时段容量
+ * 只接受标准时段，其他时段无法统计容量，直接抛出错误；
+ * 不使用占用表，重新查询当天该服务的预约并统计，所选时段已约满时抛出错误。
+ * 查询与写入之间仍有极短的并发窗口，严格的容量控制需要服务端在同一事务内校验
+ * @param order 待写入的订单（需包含 serviceId、bookingDate、timeSlot、status）
+ * @param excludeId 改约时排除订单自身
+ */
+export async function assertSlotAvailable(order: any, excludeId?: string): Promise<void> {
+  if (!occupiesSlot(order)) return;
+  const timeSlot = normalizeTimeSlot(order.timeSlot);
+  if (!TIME_SLOTS.includes(timeSlot)) {
+    throw new Error(`预约时段 ${order.timeSlot} 不可预约，请选择 ${TIME_SLOTS.join('、')}`);
+  }
+  const date = formatDate(order.bookingDate);
+  const [service, orders] = await Promise.all([
+    getEntityById<any>('wqservice', order.serviceId),
+    queryEntity<any>('serviceorder', {
+      conditions: {
+        serviceId: order.serviceId,
+        bookingDate: { $gte: date, $lte: `${date} 23:59:59` },
+      },
+      fetch: ['_id', 'timeSlot', 'status'],
+    }),
+  ]);
+
+  const capacity = slotCapacity(service);
+  const counts = new Map<string, number>();
+  orders.data.forEach((existing) => {
+    if (existing._id === excludeId || RELEASED_STATUSES.includes(Number(existing.status))) return;
+    countOrder(counts, date, existing.timeSlot, 1);
+  });
+
+  if ((counts.get(slotKey(date, timeSlot)) || 0) >= capacity) {
+    throw new Error(`${date} ${timeSlot} 已约满，请选择其他时段`);
+  }
+}
+
+function occupiesSlot(order?: any): boolean {
+  return (
+    !!order?.serviceId &&
+    !!order.bookingDate &&
+    !!order.timeSlot &&
+    !RELEASED_STATUSES.includes(Number(order.status))
+  );
+}
+
+/**
+ * 订单变更后同步时段占用
+ * @param before 变更前的订单（新建时不传）
+ * @param after 变更后的订单（删除时不传）
+ */
+export function syncSlotOccupancy(before?: any, after?: any): void {
+  if (occupiesSlot(before)) {
+    adjustSlotOccupancy(before.serviceId, before.bookingDate, before.timeSlot, -1);
+  }
+  if (occupiesSlot(after)) {
+    adjustSlotOccupancy(after.serviceId, after.bookingDate, after.timeSlot, 1);
+  }
+}
+
+/**
+ * 清除时段占用表
+ * @param serviceId 服务ID，不传则清除全部
+ */
+export function clearSlotOccupancy(serviceId?: string): void {
+  if (serviceId) {
+    occupancyTables.delete(serviceId);
+  } else {
+    occupancyTables.clear();
+  }
+}
@@ -0,0 +1,251 @@
+import { batchEntities, getEntityById, isBatchConflict, queryEntity } from './genericEntity';
+import type { BatchOperation } from './genericEntity';
+import { OrderStatusEnum } from '@/constants';
+
+/**
+ * 商品库存扣减
+ *
+ * 扣减使用条件原子更新：stock = stock - n WHERE stock >= n（$inc + expect $gte），
+ * 不再先读库存再写回；同一商品的数量先合并成一个操作，
+ * 扣减与订单明细的写入放在同一个批量请求（同一事务）中，库存不足时整体回滚。
+ * 销量随库存反向变动（扣减库存时销量增加，归还时减少），与库存在同一个操作中更新。
+ * 已取消订单的库存已经归还，其明细的增删改不再变动库存；所属订单已被删除的明细同样不变动库存
+ */
+
+/**
+ * 库存变动项
+ */
+export interface StockItem {
+  productId: string;
+  quantity: number;
+}
+
+/**
+ * 库存不足错误
+ */
+export class InsufficientStockError extends Error {
+  // 库存不足的商品
+  products: { productId: string; name?: string; stock: number; required: number }[];
+
+  constructor(products: InsufficientStockError['products']) {
+    const names = products.map((item) => `${item.name || item.productId}（剩余 ${item.stock}）`);
+    super(`库存不足：${names.join('、')}`);
+    this.name = 'InsufficientStockError';
+    this.products = products;
+  }
+}
+
+/**
+ * 合并同一商品的数量
+ */
+function mergeItems(items: StockItem[]): Map<string, number> {
+  const merged = new Map<string, number>();
+  items.forEach(({ productId, quantity }) => {
+    if (!productId) return;
+    merged.set(productId, (merged.get(productId) || 0) + (Number(quantity) || 0));
+  });
+  return merged;
+}
+
+/**
+ * 生成库存变动操作
+ * 数量为正表示扣减（带库存充足的前置条件），为负表示归还，销量按相反方向变动
+ */
+export function buildStockOperations(items: StockItem[]): BatchOperation[] {
+  const operations: BatchOperation[] = [];
+  mergeItems(items).forEach((quantity, productId) => {
+    if (quantity > 0) {
+      operations.push({
+        entity: 'product',
+        action: 'update',
+        id: productId,
+        data: { stock: { $inc: -quantity }, sales: { $inc: quantity } },
+        expect: { stock: { $gte: quantity } },
+      });
+    } else if (quantity < 0) {
+      operations.push({
+        entity: 'product',
+        action: 'update',
+        id: productId,
+        data: { stock: { $inc: -quantity }, sales: { $inc: quantity } },
+      });
+    }
+  });
+  return operations;
+}
+
+/**
+ * 找出库存不足的商品（扣减冲突后用于提示）
+ */
+async function findInsufficient(items: StockItem[]): Promise<InsufficientStockError['products']> {
+  const merged = mergeItems(items);
+  const required = Array.from(merged.entries()).filter(([, quantity]) => quantity > 0);
+  if (required.length === 0) return [];
+
+  const result = await queryEntity<any>('product', {
+    conditions: { _id: { $in: required.map(([productId]) => productId) } },
+    fetch: ['_id', 'name', 'stock'],
+  });
+  const products = new Map(result.data.map((product) => [product._id, product]));
+
+  return required
+    .map(([productId, quantity]) => {
+      const product = products.get(productId);
+      return {
+        productId,
+        name: product?.name,
+        stock: Number(product?.stock) || 0,
+        required: quantity,
+      };
+    })
+    .filter((item) => item.stock < item.required);
+}
+
+/**
+ * 扣减库存并执行关联操作（如创建订单明细），在同一个批量请求中完成
+ * @param items 库存变动项（数量为负表示归还）
+ * @param operations 与库存变动一起提交的其他操作
+ * @throws InsufficientStockError 库存不足
+ */
+export async function commitWithStock(
+  items: StockItem[],
+  operations: BatchOperation[] = [],
+): Promise<void> {
+  try {
+    await batchEntities([...buildStockOperations(items), ...operations]);
+  } catch (error) {
+    if (isBatchConflict(error)) {
+      const insufficient = await findInsufficient(items);
+      if (insufficient.length > 0) {
+        throw new InsufficientStockError(insufficient);
+      }
+    }
+    throw error;
+  }
+}
+
+/**
+ * 查询订单当前状态
+ */
+async function loadOrderStatuses(orderIds: string[]): Promise<Map<string, number>> {
+  const ids = Array.from(new Set(orderIds.filter(Boolean)));
+  if (ids.length === 0) return new Map();
+  const result = await queryEntity<any>('order', {
+    conditions: { _id: { $in: ids } },
+    fetch: ['_id', 'status'],
+  });
+  return new Map(result.data.map((order) => [order._id, Number(order.status)]));
+}
+
+/**
+ * 订单状态前置条件（只校验不写入）：订单在读取之后被删除或状态发生变化（如被取消并归还了库存）时整批回滚
+ */
+function orderStatusChecks(statuses: Map<string, number>): BatchOperation[] {
+  return Array.from(statuses.entries()).map(([id, status]) => ({
+    entity: 'order',
+    action: 'check' as const,
+    id,
+    expect: { status },
+  }));
+}
+
+/**
+ * 订单明细是否占用库存（所属订单存在且未取消）
+ */
+function holdsStock(statuses: Map<string, number>, orderId: string): boolean {
+  return statuses.has(orderId) && statuses.get(orderId) !== OrderStatusEnum.CANCELLED;
+}
+
+/**
+ * 加载明细所属订单的状态，订单不存在时抛出错误
+ */
+async function loadParentStatus(orderId: string): Promise<Map<string, number>> {
+  const statuses = await loadOrderStatuses([orderId]);
+  if (!statuses.has(orderId)) {
+    throw new Error('订单不存在或已被删除');
+  }
+  return statuses;
+}
+
+/**
+ * 提交明细变更，明细或订单在读取后被修改时提示刷新
+ */
+async function commitItemChange(items: StockItem[], operations: BatchOperation[]): Promise<void> {
+  try {
+    await commitWithStock(items, operations);
+  } catch (error) {
+    if (isBatchConflict(error)) {
+      throw new Error('订单明细或订单状态已被修改，请刷新后重试');
+    }
+    throw error;
+  }
+}
+
+/**
+ * 新增订单明细并扣减库存
+ */
+export async function createOrderItemWithStock(data: Record<string, any>): Promise<void> {
+  const statuses = await loadParentStatus(data.orderId);
+  await commitItemChange(
+    holdsStock(statuses, data.orderId)
+      ? [{ productId: data.productId, quantity: Number(data.quantity) || 0 }]
+      : [],
+    [{ entity: 'orderItem', action: 'create', data }, ...orderStatusChecks(statuses)],
+  );
+}
+
+/**
+ * 修改订单明细并按数量差额扣减/归还库存（更换商品时归还原商品、扣减新商品）
+ * 更新带上读取到的商品和数量作为前置条件，避免按过期的数量计算差额
+ */
+export async function updateOrderItemWithStock(id: string, data: Record<string, any>): Promise<void> {
+  const previous = await getEntityById<any>('orderItem', id);
+  if (!previous) {
+    throw new Error('订单明细不存在');
+  }
+  const statuses = await loadParentStatus(previous.orderId);
+  const items: StockItem[] = holdsStock(statuses, previous.orderId)
+    ? [
+        { productId: previous.productId, quantity: -(Number(previous.quantity) || 0) },
+        {
+          productId: data.productId ?? previous.productId,
+          quantity: Number(data.quantity ?? previous.quantity) || 0,
+        },
+      ]
+    : [];
+  await commitItemChange(items, [
+    {
+      entity: 'orderItem',
+      action: 'update',
+      id,
+      data,
+      expect: { productId: previous.productId, quantity: previous.quantity },
+    },
+    ...orderStatusChecks(statuses),
+  ]);
+}
+
+/**
+ * 删除订单明细并归还库存（已取消或已删除订单的明细不归还）
+ */
+export async function deleteOrderItemsWithStock(ids: string[]): Promise<void> {
+  const result = await queryEntity<any>('orderItem', {
+    conditions: { _id: { $in: ids } },
+    fetch: ['_id', 'orderId', 'productId', 'quantity'],
+  });
+  const statuses = await loadOrderStatuses(result.data.map((item) => item.orderId));
+  await commitItemChange(
+    result.data
+      .filter((item) => holdsStock(statuses, item.orderId))
+      .map((item) => ({ productId: item.productId, quantity: -(Number(item.quantity) || 0) })),
+    [
+      ...result.data.map((item) => ({
+        entity: 'orderItem',
+        action: 'delete' as const,
+        id: item._id,
+        expect: { productId: item.productId, quantity: item.quantity },
+      })),
+      ...orderStatusChecks(statuses),
+    ],
+  );
+}
@@ -0,0 +1,126 @@
+/**
+ * 导出文件工具
+ * 支持 File System Access API 的浏览器边接收边写入磁盘（内存占用不随数据量增长），
+ * 其他浏览器退化为分块 Blob 后下载
+ */
+
+export type ExportFormat = 'csv' | 'ndjson';
+
+/**
+ * 导出列
+ */
+export interface ExportColumn {
+  dataIndex: string;
+  title: string;
+}
+
+/**
+ * 导出文件写入器
+ */
+export interface ExportWriter {
+  write: (chunk: string | Uint8Array) => Promise<void>;
+  close: () => Promise<void>;
+  abort: () => Promise<void>;
+}
+
+const MIME_TYPES: Record<ExportFormat, string> = {
+  csv: 'text/csv',
+  ndjson: 'application/x-ndjson',
+};
+
+/**
+ * 转换为 CSV 单元格（对象转 JSON，包含逗号、引号、换行时加引号）
+ */
+function toCsvCell(value: any): string {
+  if (value === null || value === undefined) return '';
+  const text = typeof value === 'object' ? JSON.stringify(value) : String(value);
+  return /[",\r\n]/.test(text) ? `"${text.replace(/"/g, '""')}"` : text;
+}
+
+/**
+ * 生成 CSV 行
+ */
+export function toCsvRow(values: any[]): string {
+  return `${values.map(toCsvCell).join(',')}\r\n`;
+}
+
+/**
+ * 按导出格式序列化一批记录
+ * @param header 是否输出 CSV 表头
+ */
+export function serializeRows(
+  rows: Record<string, any>[],
+  format: ExportFormat,
+  columns: ExportColumn[],
+  header: boolean = false,
+): string {
+  if (format === 'ndjson') {
+    return rows
+      .map((row) => {
+        const picked: Record<string, any> = {};
+        columns.forEach(({ dataIndex }) => {
+          picked[dataIndex] = row[dataIndex];
+        });
+        return `${JSON.stringify(columns.length > 0 ? picked : row)}\n`;
+      })
+      .join('');
+  }
+  const lines = rows.map((row) => toCsvRow(columns.map(({ dataIndex }) => row[dataIndex])));
+  if (header) {
+    // 带 BOM，Excel 打开中文不乱码
+    lines.unshift(`﻿${toCsvRow(columns.map(({ title }) => title))}`);
+  }
+  return lines.join('');
+}
+
+function download(blob: Blob, filename: string) {
+  const url = URL.createObjectURL(blob);
+  const link = document.createElement('a');
+  link.href = url;
+  link.download = filename;
+  document.body.appendChild(link);
+  link.click();
+  document.body.removeChild(link);
+  setTimeout(() => URL.revokeObjectURL(url), 1000);
+}
+
+/**
+ * 打开导出文件（需要在用户点击事件中调用）
+ * @returns 写入器，用户取消保存时返回 null
+ */
+export async function openExportWriter(
+  filename: string,
+  format: ExportFormat,
+): Promise<ExportWriter | null> {
+  const picker = (window as any).showSaveFilePicker;
+  if (typeof picker === 'function') {
+    try {
+      const handle = await picker({
+        suggestedName: filename,
+        types: [{ description: format.toUpperCase(), accept: { [MIME_TYPES[format]]: [`.${format}`] } }],
+      });
+      const writable = await handle.createWritable();
+      return {
+        write: (chunk) => writable.write(chunk),
+        close: () => writable.close(),
+        abort: () => writable.abort(),
+      };
+    } catch (error: any) {
+      if (error?.name === 'AbortError') return null;
+      // 其他错误（如权限限制）退化为下载
+    }
+  }
+
+  const parts: BlobPart[] = [];
+  return {
+    write: async (chunk) => {
+      parts.push(chunk as BlobPart);
+    },
+    close: async () => {
+      download(new Blob(parts, { type: MIME_TYPES[format] }), filename);
+    },
+    abort: async () => {
+      parts.length = 0;
+    },
+  };
+}
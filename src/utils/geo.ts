@@ -0,0 +1,256 @@
+/**
+ * 经纬度工具与空间索引
+ *
+ * GeoIndex 把坐标放入固定大小的经纬度网格（与 geohash 分格等价，默认约 1 公里一格），
+ * 最近邻查询从所在格子开始一圈圈向外扩展，已找到的第 k 个距离不超过未访问格子的最近距离时结束，
+ * 扩展访问的格子数超过元素总数时（过滤后不足 k 个、数据稀疏等）改为直接遍历全部元素；
+ * 半径查询只访问半径外接矩形覆盖的格子。数据范围按国内业务设计，不处理跨 180° 经线的情况
+ */
+
+// 地球平均半径（米）
+const EARTH_RADIUS = 6371008.8;
+// 每度纬度对应的距离（米）
+const METERS_PER_DEGREE = (Math.PI * EARTH_RADIUS) / 180;
+
+/**
+ * 坐标点
+ */
+export interface GeoPoint {
+  lng: number;
+  lat: number;
+}
+
+/**
+ * 查询结果（距离单位：米）
+ */
+export interface GeoHit<T> {
+  item: T;
+  distance: number;
+}
+
+interface GeoEntry<T> {
+  id: string;
+  key: string;
+  lng: number;
+  lat: number;
+  item: T;
+}
+
+const toRadians = (degree: number) => (degree * Math.PI) / 180;
+
+/**
+ * 两点间球面距离（米）
+ */
+export function haversineDistance(lng1: number, lat1: number, lng2: number, lat2: number): number {
+  const dLat = toRadians(lat2 - lat1);
+  const dLng = toRadians(lng2 - lng1);
+  const a =
+    Math.sin(dLat / 2) ** 2 +
+    Math.cos(toRadians(lat1)) * Math.cos(toRadians(lat2)) * Math.sin(dLng / 2) ** 2;
+  return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+}
+
+/**
+ * 解析经纬度（后端返回的 DECIMAL 可能是字符串），无效或缺失时返回 undefined
+ */
+export function parseGeoPoint(lng: any, lat: any): GeoPoint | undefined {
+  if (lng === undefined || lng === null || lng === '' || lat === undefined || lat === null || lat === '') {
+    return undefined;
+  }
+  const point = { lng: Number(lng), lat: Number(lat) };
+  if (
+    !Number.isFinite(point.lng) ||
+    !Number.isFinite(point.lat) ||
+    Math.abs(point.lng) > 180 ||
+    Math.abs(point.lat) > 90
+  ) {
+    return undefined;
+  }
+  return point;
+}
+
+/**
+ * 格式化距离（1 公里以内显示米）
+ */
+export function formatDistance(distance?: number): string {
+  if (distance === undefined || distance === null) return '-';
+  return distance < 1000 ? `${Math.round(distance)} 米` : `${(distance / 1000).toFixed(1)} 公里`;
+}
+
+export class GeoIndex<T> {
+  private readonly cellSize: number;
+
+  private readonly cells = new Map<string, Map<string, GeoEntry<T>>>();
+
+  private readonly entries = new Map<string, GeoEntry<T>>();
+
+  // 出现过元素的格子行列范围（只扩大不缩小），最近邻查询扩展超出范围后结束
+  private readonly bounds = { minRow: Infinity, maxRow: -Infinity, minCol: Infinity, maxCol: -Infinity };
+
+  /**
+   * @param cellSize 网格边长（度），默认 0.01° 约 1.1 公里
+   */
+  constructor(cellSize: number = 0.01) {
+    this.cellSize = cellSize;
+  }
+
+  get size(): number {
+    return this.entries.size;
+  }
+
+  private row(lat: number): number {
+    return Math.floor(lat / this.cellSize);
+  }
+
+  private col(lng: number): number {
+    return Math.floor(lng / this.cellSize);
+  }
+
+  /**
+   * 添加或移动元素
+   */
+  put(id: string, lng: number, lat: number, item: T): void {
+    const row = this.row(lat);
+    const col = this.col(lng);
+    const key = `${row}:${col}`;
+    const existing = this.entries.get(id);
+    if (existing && existing.key !== key) {
+      this.removeFromCell(existing);
+    }
+    const entry: GeoEntry<T> = { id, key, lng, lat, item };
+    this.entries.set(id, entry);
+    const cell = this.cells.get(key);
+    if (cell) {
+      cell.set(id, entry);
+    } else {
+      this.cells.set(key, new Map([[id, entry]]));
+    }
+    this.bounds.minRow = Math.min(this.bounds.minRow, row);
+    this.bounds.maxRow = Math.max(this.bounds.maxRow, row);
+    this.bounds.minCol = Math.min(this.bounds.minCol, col);
+    this.bounds.maxCol = Math.max(this.bounds.maxCol, col);
+  }
+
+  remove(id: string): void {
+    const entry = this.entries.get(id);
+    if (!entry) return;
+    this.entries.delete(id);
+    this.removeFromCell(entry);
+  }
+
+  has(id: string): boolean {
+    return this.entries.has(id);
+  }
+
+  private removeFromCell(entry: GeoEntry<T>) {
+    const cell = this.cells.get(entry.key);
+    if (!cell) return;
+    cell.delete(entry.id);
+    if (cell.size === 0) {
+      this.cells.delete(entry.key);
+    }
+  }
+
+  /**
+   * 最近的 k 个元素（按距离从近到远）
+   * @param maxDistance 最大距离（米），不传时不限
+   * @param filter 过滤条件，不满足的元素不计入 k 个
+   */
+  nearest(
+    lng: number,
+    lat: number,
+    k: number,
+    maxDistance: number = Infinity,
+    filter?: (item: T) => boolean,
+  ): GeoHit<T>[] {
+    const hits: GeoHit<T>[] = [];
+    if (k <= 0 || this.entries.size === 0) return hits;
+
+    const { minRow, maxRow, minCol, maxCol } = this.bounds;
+    const centerRow = this.row(lat);
+    const centerCol = this.col(lng);
+    // 一格在东西、南北方向上的最短距离（经度方向按网格覆盖范围内最高纬度计算）
+    const maxLat = Math.min(
+      89,
+      Math.max(Math.abs(lat), Math.abs(minRow * this.cellSize), Math.abs((maxRow + 1) * this.cellSize)),
+    );
+    const cellMeters = this.cellSize * METERS_PER_DEGREE * Math.cos(toRadians(maxLat));
+
+    const collect = (entry: GeoEntry<T>) => {
+      if (filter && !filter(entry.item)) return;
+      const distance = haversineDistance(lng, lat, entry.lng, entry.lat);
+      if (distance > maxDistance) return;
+      if (hits.length === k && distance >= hits[k - 1].distance) return;
+      // k 通常很小，有序插入即可
+      let position = hits.length;
+      while (position > 0 && hits[position - 1].distance > distance) position--;
+      hits.splice(position, 0, { item: entry.item, distance });
+      if (hits.length > k) hits.pop();
+    };
+    const visit = (row: number, col: number) => {
+      this.cells.get(`${row}:${col}`)?.forEach(collect);
+    };
+
+    for (let ring = 0; ; ring++) {
+      // 扩展到这一圈时访问的格子数（含已访问的）超过元素总数，遍历全部元素更快
+      if (ring > 0 && (2 * ring + 1) ** 2 > this.entries.size) {
+        hits.length = 0;
+        this.entries.forEach(collect);
+        break;
+      }
+      const top = centerRow - ring;
+      const bottom = centerRow + ring;
+      const left = centerCol - ring;
+      const right = centerCol + ring;
+      if (ring === 0) {
+        visit(centerRow, centerCol);
+      } else {
+        for (let col = left; col <= right; col++) {
+          visit(top, col);
+          visit(bottom, col);
+        }
+        for (let row = top + 1; row < bottom; row++) {
+          visit(row, left);
+          visit(row, right);
+        }
+      }
+
+      // 下一圈格子与查询点的最近距离
+      const nextRingDistance = ring * cellMeters;
+      if (hits.length === k && hits[k - 1].distance <= nextRingDistance) break;
+      if (nextRingDistance > maxDistance) break;
+      if (top <= minRow && bottom >= maxRow && left <= minCol && right >= maxCol) break;
+    }
+    return hits;
+  }
+
+  /**
+   * 半径范围内的全部元素（按距离从近到远）
+   * @param radius 半径（米）
+   */
+  withinRadius(lng: number, lat: number, radius: number, filter?: (item: T) => boolean): GeoHit<T>[] {
+    const hits: GeoHit<T>[] = [];
+    const collect = (entry: GeoEntry<T>) => {
+      if (filter && !filter(entry.item)) return;
+      const distance = haversineDistance(lng, lat, entry.lng, entry.lat);
+      if (distance <= radius) hits.push({ item: entry.item, distance });
+    };
+
+    const dLat = radius / METERS_PER_DEGREE;
+    const dLng = Math.min(180, dLat / Math.max(Math.cos(toRadians(Math.min(89, Math.abs(lat) + dLat))), 0.01));
+    const rows = this.row(lat + dLat) - this.row(lat - dLat) + 1;
+    const cols = this.col(lng + dLng) - this.col(lng - dLng) + 1;
+
+    if (rows * cols > this.cells.size) {
+      // 覆盖的格子比已占用的格子还多时直接遍历
+      this.entries.forEach(collect);
+    } else {
+      for (let row = this.row(lat - dLat); row <= this.row(lat + dLat); row++) {
+        for (let col = this.col(lng - dLng); col <= this.col(lng + dLng); col++) {
+          this.cells.get(`${row}:${col}`)?.forEach(collect);
+        }
+      }
+    }
+    return hits.sort((a, b) => a.distance - b.distance);
+  }
+}
@@ -0,0 +1,27 @@
+/**
+ * 字符串哈希工具
+ * FNV-1a 32 位哈希，速度快、分布均匀，不能用于安全场景
+ */
+
+const FNV_OFFSET_BASIS = 2166136261;
+const FNV_PRIME = 16777619;
+
+/**
+ * FNV-1a 哈希（无符号 32 位整数）
+ * @param seed 种子，不同种子得到相互独立的哈希，用于需要多个哈希函数的场景
+ */
+export function fnv1a(text: string, seed: number = 0): number {
+  let hash = FNV_OFFSET_BASIS ^ seed;
+  for (let i = 0; i < text.length; i++) {
+    hash ^= text.charCodeAt(i);
+    hash = Math.imul(hash, FNV_PRIME);
+  }
+  return hash >>> 0;
+}
+
+/**
+ * FNV-1a 哈希的 8 位十六进制字符串
+ */
+export function fnv1aHex(text: string, seed: number = 0): string {
+  return fnv1a(text, seed).toString(16).padStart(8, '0');
+}
@@ -0,0 +1,129 @@
+/**
+ * ID 生成工具
+ * 生成按时间有序、同一节点内单调递增的 ID，替代 "毫秒时间戳_随机数" 格式
+ */
+
+// Crockford Base32 字符表（去掉 I、L、O、U，避免混淆）
+const ENCODING = '0123456789ABCDEFGHJKMNPQRSTVWXYZ';
+const TIME_LENGTH = 10;
+const RANDOM_LENGTH = 16;
+
+/**
+ * 生成随机数字（优先使用 crypto）
+ */
+function randomDigits(length: number, radix: number): number[] {
+  const values = new Uint8Array(length);
+  if (typeof crypto !== 'undefined' && crypto.getRandomValues) {
+    crypto.getRandomValues(values);
+  } else {
+    for (let i = 0; i < length; i++) {
+      values[i] = Math.floor(Math.random() * 256);
+    }
+  }
+  return Array.from(values, (value) => value % radix);
+}
+
+/**
+ * 编码时间戳（48 位毫秒时间戳 -> 10 位 Base32）
+ */
+function encodeTime(time: number): string {
+  let remaining = time;
+  let result = '';
+  for (let i = 0; i < TIME_LENGTH; i++) {
+    result = ENCODING[remaining % 32] + result;
+    remaining = Math.floor(remaining / 32);
+  }
+  return result;
+}
+
+/**
+ * 随机部分加一（同一毫秒内保证单调递增）
+ * @returns 是否溢出
+ */
+function increment(digits: number[], radix: number): boolean {
+  for (let i = digits.length - 1; i >= 0; i--) {
+    if (digits[i] < radix - 1) {
+      digits[i]++;
+      return false;
+    }
+    digits[i] = 0;
+  }
+  return true;
+}
+
+/**
+ * 创建 ULID 风格的 ID 生成器
+ * 格式：10 位时间戳 + 16 位随机数（共 26 位，可按字符串排序）
+ * 同一毫秒内随机部分递增，时钟回拨时沿用上次的时间戳，保证单调
+ */
+export function createIdGenerator(): () => string {
+  let lastTime = 0;
+  let lastRandom: number[] = [];
+
+  return () => {
+    const now = Date.now();
+    if (now > lastTime) {
+      lastTime = now;
+      lastRandom = randomDigits(RANDOM_LENGTH, 32);
+    } else if (increment(lastRandom, 32)) {
+      // 随机部分溢出，借用下一毫秒
+      lastTime++;
+      lastRandom = randomDigits(RANDOM_LENGTH, 32);
+    }
+    return encodeTime(lastTime) + lastRandom.map((digit) => ENCODING[digit]).join('');
+  };
+}
+
+/**
+ * 生成全局唯一、按时间有序的 ID
+ */
+export const generateId = createIdGenerator();
+
+// 当前页面的节点号（6 位 Base32 随机数，约 10 亿种），不同浏览器页面并发生成订单号时区分来源，
+// 两个页面节点号相同的概率可以忽略；数据库 order_no 仍保留唯一键兜底
+const NODE_ID_LENGTH = 6;
+const NODE_ID = randomDigits(NODE_ID_LENGTH, 32)
+  .map((digit) => ENCODING[digit])
+  .join('');
+
+let lastOrderSecond = 0;
+let orderSequence = 0;
+
+/**
+ * 格式化为 yyyyMMddHHmmss
+ */
+function formatSecond(date: Date): string {
+  const pad = (value: number) => String(value).padStart(2, '0');
+  return (
+    date.getFullYear() +
+    pad(date.getMonth() + 1) +
+    pad(date.getDate()) +
+    pad(date.getHours()) +
+    pad(date.getMinutes()) +
+    pad(date.getSeconds())
+  );
+}
+
+/**
+ * 生成业务订单号
+ * 格式：前缀 + yyyyMMddHHmmss + 6 位节点号 + 4 位序号（同一秒内递增）
+ * @param prefix 订单号前缀（如：O 商城订单，SO 服务订单）
+ */
+export function generateOrderNo(prefix: string = ''): string {
+  // 时钟回拨时沿用上次的时间
+  let second = Math.max(Math.floor(Date.now() / 1000), lastOrderSecond);
+
+  if (second === lastOrderSecond) {
+    orderSequence++;
+    if (orderSequence > 9999) {
+      // 同一秒序号用完，借用下一秒
+      second++;
+      orderSequence = 0;
+    }
+  } else {
+    orderSequence = 0;
+  }
+  lastOrderSecond = second;
+
+  return `${prefix}${formatSecond(new Date(second * 1000))}${NODE_ID}${String(orderSequence).padStart(4, '0')}`;
+}
@@ -0,0 +1,163 @@
+/**
+ * 导入文件解析
+ * 按块读取文件（File.stream），逐行解析 CSV / NDJSON，不把整个文件读入内存
+ */
+
+export type ImportFormat = 'csv' | 'ndjson';
+
+/**
+ * 解析出的一行数据（row 为文件中的行号，从 1 开始，CSV 表头为第 1 行）
+ */
+export interface ImportRecord {
+  row: number;
+  record: Record<string, any>;
+}
+
+/**
+ * 根据文件名判断格式
+ */
+export function detectImportFormat(filename: string): ImportFormat {
+  return /\.(ndjson|jsonl)$/i.test(filename) ? 'ndjson' : 'csv';
+}
+
+/**
+ * 按块读取文本
+ * @param onRead 已读取的字节数（用于显示进度）
+ */
+async function* readChunks(file: Blob, onRead?: (bytes: number) => void): AsyncGenerator<string> {
+  const reader = file.stream().getReader();
+  const decoder = new TextDecoder('utf-8');
+  let bytes = 0;
+  for (;;) {
+    const { done, value } = await reader.read();
+    if (done) break;
+    bytes += value.length;
+    onRead?.(bytes);
+    yield decoder.decode(value, { stream: true });
+  }
+  const rest = decoder.decode();
+  if (rest) yield rest;
+}
+
+/**
+ * 流式 CSV 解析（支持引号内的逗号、换行和转义的双引号）
+ * @returns 每一行的单元格及起始行号
+ */
+async function* parseCsv(
+  file: Blob,
+  onRead?: (bytes: number) => void,
+): AsyncGenerator<{ line: number; cells: string[] }> {
+  let cells: string[] = [];
+  let cell = '';
+  let quoted = false;
+  // 上一块以引号结尾时，需要看下一块的第一个字符才能判断是否为转义的双引号
+  let pendingQuote = false;
+  let line = 1;
+  let rowStart = 1;
+  let first = true;
+
+  for await (let chunk of readChunks(file, onRead)) {
+    if (first) {
+      // 去掉 BOM
+      chunk = chunk.replace(/^﻿/, '');
+      first = false;
+    }
+    for (let i = 0; i < chunk.length; i++) {
+      const char = chunk[i];
+      if (pendingQuote) {
+        pendingQuote = false;
+        if (char === '"') {
+          cell += '"';
+          continue;
+        }
+        quoted = false;
+      }
+      if (quoted) {
+        if (char === '"') {
+          pendingQuote = true;
+        } else {
+          if (char === '\n') line++;
+          cell += char;
+        }
+        continue;
+      }
+      if (char === '"' && cell === '') {
+        quoted = true;
+      } else if (char === ',') {
+        cells.push(cell);
+        cell = '';
+      } else if (char === '\n') {
+        cells.push(cell.replace(/\r$/, ''));
+        yield { line: rowStart, cells };
+        cells = [];
+        cell = '';
+        line++;
+        rowStart = line;
+      } else {
+        cell += char;
+      }
+    }
+  }
+
+  if (cell !== '' || cells.length > 0) {
+    cells.push(cell.replace(/\r$/, ''));
+    yield { line: rowStart, cells };
+  }
+}
+
+/**
+ * 流式读取导入文件
+ * CSV 第一行为表头，表头可以是字段名或 headerMap 中的列标题
+ * @param headerMap 列标题 -> 字段名
+ * @param onRead 已读取的字节数
+ */
+export async function* readImportRecords(
+  file: Blob,
+  format: ImportFormat,
+  headerMap: Record<string, string> = {},
+  onRead?: (bytes: number) => void,
+): AsyncGenerator<ImportRecord> {
+  if (format === 'ndjson') {
+    let buffer = '';
+    let line = 0;
+    const parseLine = (text: string): ImportRecord | null => {
+      line++;
+      const trimmed = text.trim();
+      if (!trimmed) return null;
+      try {
+        return { row: line, record: JSON.parse(trimmed) };
+      } catch (error) {
+        // 格式错误的行交给校验阶段报告
+        return { row: line, record: { __parseError: 'JSON 格式错误' } };
+      }
+    };
+    for await (const chunk of readChunks(file, onRead)) {
+      buffer += chunk;
+      const lines = buffer.split('\n');
+      buffer = lines.pop() || '';
+      for (const text of lines) {
+        const parsed = parseLine(text);
+        if (parsed) yield parsed;
+      }
+    }
+    const parsed = parseLine(buffer);
+    if (parsed) yield parsed;
+    return;
+  }
+
+  let fields: string[] | null = null;
+  for await (const { line, cells } of parseCsv(file, onRead)) {
+    if (!fields) {
+      fields = cells.map((title) => headerMap[title.trim()] || title.trim());
+      continue;
+    }
+    if (cells.length === 1 && cells[0] === '') continue;
+    const record: Record<string, any> = {};
+    fields.forEach((field, index) => {
+      if (field && cells[index] !== undefined && cells[index] !== '') {
+        record[field] = cells[index];
+      }
+    });
+    yield { row: line, record };
+  }
+}
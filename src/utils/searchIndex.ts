@@ -0,0 +1,185 @@
+/**
+ * 内存倒排索引
+ * 文本（中文、英文、数字）按单字 + 相邻两字（bigram）切分，查询时按词项取倒排表求交集得到候选，
+ * 再校验候选的索引字段是否包含完整关键词，结果与不区分大小写的 LIKE '%关键词%' 一致，
+ * 不需要逐条做 LIKE 匹配
+ */
+
+// 参与切分的字符：中文（含扩展 A 区）、英文、数字
+const WORD_PATTERN = /[㐀-䶿一-鿿a-z0-9]/;
+
+/**
+ * 统一大小写（索引、查询、校验使用同一规则）
+ */
+function normalize(text: any): string {
+  return String(text ?? '').toLowerCase();
+}
+
+/**
+ * 按标点、空白切分为连续片段
+ */
+function splitRuns(text: string): string[][] {
+  const runs: string[][] = [];
+  let current: string[] = [];
+  for (const char of normalize(text)) {
+    if (WORD_PATTERN.test(char)) {
+      current.push(char);
+    } else if (current.length > 0) {
+      runs.push(current);
+      current = [];
+    }
+  }
+  if (current.length > 0) runs.push(current);
+  return runs;
+}
+
+/**
+ * 生成索引词项（单字 + bigram，任意位置的子串都能命中，如 phone 命中 iPhone）
+ */
+export function tokenize(text: string): string[] {
+  const tokens = new Set<string>();
+  splitRuns(text).forEach((chars) => {
+    chars.forEach((char, index) => {
+      tokens.add(char);
+      if (index < chars.length - 1) tokens.add(char + chars[index + 1]);
+    });
+  });
+  return Array.from(tokens);
+}
+
+/**
+ * 生成查询词项（两字以上的片段只用 bigram）
+ */
+export function tokenizeQuery(text: string): string[] {
+  const tokens = new Set<string>();
+  splitRuns(text).forEach((chars) => {
+    if (chars.length === 1) {
+      tokens.add(chars[0]);
+    } else {
+      for (let i = 0; i < chars.length - 1; i++) tokens.add(chars[i] + chars[i + 1]);
+    }
+  });
+  return Array.from(tokens);
+}
+
+/**
+ * 索引字段及权重（用于相关度排序）
+ */
+export interface SearchField {
+  name: string;
+  weight?: number;
+}
+
+interface IndexedDocument<T> {
+  record: T;
+  tokens: Map<string, number>;
+}
+
+export class InvertedIndex<T extends { _id: string }> {
+  private readonly fields: SearchField[];
+
+  // 词项 -> (记录ID -> 得分)
+  private readonly postings = new Map<string, Map<string, number>>();
+
+  private readonly documents = new Map<string, IndexedDocument<T>>();
+
+  constructor(fields: SearchField[]) {
+    this.fields = fields;
+  }
+
+  /**
+   * 索引中的记录数
+   */
+  get size(): number {
+    return this.documents.size;
+  }
+
+  /**
+   * 添加或更新记录
+   */
+  put(record: T): void {
+    this.remove(record._id);
+
+    const tokens = new Map<string, number>();
+    this.fields.forEach(({ name, weight = 1 }) => {
+      tokenize((record as any)[name]).forEach((token) => {
+        tokens.set(token, (tokens.get(token) || 0) + weight);
+      });
+    });
+
+    tokens.forEach((score, token) => {
+      let posting = this.postings.get(token);
+      if (!posting) {
+        posting = new Map();
+        this.postings.set(token, posting);
+      }
+      posting.set(record._id, score);
+    });
+    this.documents.set(record._id, { record, tokens });
+  }
+
+  /**
+   * 删除记录
+   */
+  remove(id: string): void {
+    const document = this.documents.get(id);
+    if (!document) return;
+    document.tokens.forEach((_, token) => {
+      const posting = this.postings.get(token);
+      posting?.delete(id);
+      if (posting && posting.size === 0) this.postings.delete(token);
+    });
+    this.documents.delete(id);
+  }
+
+  /**
+   * 获取记录
+   */
+  get(id: string): T | undefined {
+    return this.documents.get(id)?.record;
+  }
+
+  /**
+   * 关键词检索，结果按相关度排序
+   * @param keyword 关键词
+   * @param filter 额外的过滤条件（分类、状态、价格区间等）
+   * @param limit 最多返回条数，不传时返回全部匹配
+   */
+  search(keyword: string, filter?: (record: T) => boolean, limit?: number): T[] {
+    const tokens = tokenizeQuery(keyword);
+    if (tokens.length === 0) return [];
+    const needle = normalize(keyword);
+
+    const postings = tokens.map((token) => this.postings.get(token));
+    if (postings.some((posting) => !posting)) return [];
+
+    // 从最短的倒排表开始求交集
+    const sorted = (postings as Map<string, number>[]).sort((a, b) => a.size - b.size);
+    const results: { record: T; score: number }[] = [];
+    sorted[0].forEach((firstScore, id) => {
+      let score = firstScore;
+      for (let i = 1; i < sorted.length; i++) {
+        const value = sorted[i].get(id);
+        if (value === undefined) return;
+        score += value;
+      }
+      const record = this.documents.get(id)!.record;
+      // 词项都出现不代表连续出现，校验索引字段包含完整关键词
+      if (!this.fields.some(({ name }) => normalize((record as any)[name]).includes(needle))) return;
+      if (!filter || filter(record)) {
+        results.push({ record, score });
+      }
+    });
+
+    results.sort((a, b) => b.score - a.score);
+    return (limit === undefined ? results : results.slice(0, limit)).map((item) => item.record);
+  }
+
+  /**
+   * 清空索引
+   */
+  clear(): void {
+    this.postings.clear();
+    this.documents.clear();
+  }
+}
@@ -0,0 +1,226 @@
+import { fnv1a } from './hash';
+
+/**
+ * W-TinyLFU 淘汰策略的有界缓存
+ *
+ * 新数据先进入窗口 LRU（约 1% 容量），被挤出窗口后与主区（分段 LRU：试用区 20% + 保护区 80%）
+ * 最久未用的数据比较访问频率（Count-Min Sketch 估算），频率更高的才能留在主区，
+ * 避免一次性的大量查询把热点数据挤出缓存
+ */
+
+interface CacheEntry<V> {
+  value: V;
+  expiresAt: number;
+}
+
+/**
+ * 缓存统计
+ */
+export interface CacheStats {
+  hits: number;
+  misses: number;
+  evictions: number;
+  size: number;
+  hitRate: number;
+}
+
+/**
+ * Count-Min Sketch 频率估算（4 行，4 位计数器上限 15，定期减半实现衰减）
+ */
+class FrequencySketch {
+  private readonly width: number;
+
+  private readonly table: Uint8Array;
+
+  private readonly sampleSize: number;
+
+  private additions = 0;
+
+  constructor(maxSize: number) {
+    let width = 16;
+    while (width < maxSize * 4) width *= 2;
+    this.width = width;
+    this.table = new Uint8Array(width * 4);
+    this.sampleSize = Math.max(10 * maxSize, 100);
+  }
+
+  increment(key: string): void {
+    for (let row = 0; row < 4; row++) {
+      const index = row * this.width + (fnv1a(key, row) & (this.width - 1));
+      if (this.table[index] < 15) this.table[index]++;
+    }
+    if (++this.additions >= this.sampleSize) {
+      for (let i = 0; i < this.table.length; i++) this.table[i] >>= 1;
+      this.additions = Math.floor(this.additions / 2);
+    }
+  }
+
+  frequency(key: string): number {
+    let min = 15;
+    for (let row = 0; row < 4; row++) {
+      min = Math.min(min, this.table[row * this.width + (fnv1a(key, row) & (this.width - 1))]);
+    }
+    return min;
+  }
+}
+
+export class TinyLfuCache<V> {
+  private readonly windowCapacity: number;
+
+  private readonly protectedCapacity: number;
+
+  private readonly mainCapacity: number;
+
+  // Map 按插入顺序迭代，第一个元素即最久未使用
+  private readonly window = new Map<string, CacheEntry<V>>();
+
+  private readonly probation = new Map<string, CacheEntry<V>>();
+
+  private readonly protectedArea = new Map<string, CacheEntry<V>>();
+
+  private readonly sketch: FrequencySketch;
+
+  private hits = 0;
+
+  private misses = 0;
+
+  private evictions = 0;
+
+  /**
+   * @param maxSize 最大缓存条数
+   */
+  constructor(maxSize: number) {
+    this.windowCapacity = Math.max(1, Math.floor(maxSize * 0.01));
+    this.mainCapacity = Math.max(1, maxSize - this.windowCapacity);
+    this.protectedCapacity = Math.floor(this.mainCapacity * 0.8);
+    this.sketch = new FrequencySketch(maxSize);
+  }
+
+  get size(): number {
+    return this.window.size + this.probation.size + this.protectedArea.size;
+  }
+
+  /**
+   * 读取缓存，过期的数据视为未命中
+   */
+  get(key: string): V | undefined {
+    this.sketch.increment(key);
+    const now = Date.now();
+
+    let entry = this.window.get(key);
+    if (entry) {
+      if (entry.expiresAt <= now) return this.expire(key);
+      this.window.delete(key);
+      this.window.set(key, entry);
+      this.hits++;
+      return entry.value;
+    }
+
+    entry = this.probation.get(key);
+    if (entry) {
+      if (entry.expiresAt <= now) return this.expire(key);
+      // 试用区再次命中，晋升到保护区
+      this.probation.delete(key);
+      this.protectedArea.set(key, entry);
+      if (this.protectedArea.size > this.protectedCapacity) {
+        const [demotedKey, demoted] = this.protectedArea.entries().next().value!;
+        this.protectedArea.delete(demotedKey);
+        this.probation.set(demotedKey, demoted);
+      }
+      this.hits++;
+      return entry.value;
+    }
+
+    entry = this.protectedArea.get(key);
+    if (entry) {
+      if (entry.expiresAt <= now) return this.expire(key);
+      this.protectedArea.delete(key);
+      this.protectedArea.set(key, entry);
+      this.hits++;
+      return entry.value;
+    }
+
+    this.misses++;
+    return undefined;
+  }
+
+  /**
+   * 写入缓存
+   * @param ttl 有效期（毫秒）
+   */
+  set(key: string, value: V, ttl: number): void {
+    const entry = { value, expiresAt: Date.now() + ttl };
+
+    // 已存在的数据原地更新
+    for (const area of [this.window, this.probation, this.protectedArea]) {
+      if (area.has(key)) {
+        area.delete(key);
+        area.set(key, entry);
+        return;
+      }
+    }
+
+    this.window.set(key, entry);
+    if (this.window.size <= this.windowCapacity) return;
+
+    // 窗口已满，最久未用的数据作为候选进入主区
+    const [candidateKey, candidate] = this.window.entries().next().value!;
+    this.window.delete(candidateKey);
+
+    if (this.probation.size + this.protectedArea.size < this.mainCapacity) {
+      this.probation.set(candidateKey, candidate);
+      return;
+    }
+
+    const victimArea = this.probation.size > 0 ? this.probation : this.protectedArea;
+    const victimKey = victimArea.keys().next().value;
+    if (victimKey !== undefined && this.sketch.frequency(candidateKey) > this.sketch.frequency(victimKey)) {
+      victimArea.delete(victimKey);
+      this.probation.set(candidateKey, candidate);
+    }
+    this.evictions++;
+  }
+
+  /**
+   * 删除缓存
+   */
+  delete(key: string): void {
+    this.window.delete(key);
+    this.probation.delete(key);
+    this.protectedArea.delete(key);
+  }
+
+  /**
+   * 删除满足条件的缓存
+   */
+  deleteWhere(predicate: (key: string) => boolean): void {
+    [this.window, this.probation, this.protectedArea].forEach((area) => {
+      Array.from(area.keys()).forEach((key) => {
+        if (predicate(key)) area.delete(key);
+      });
+    });
+  }
+
+  clear(): void {
+    this.window.clear();
+    this.probation.clear();
+    this.protectedArea.clear();
+  }
+
+  stats(): CacheStats {
+    const total = this.hits + this.misses;
+    return {
+      hits: this.hits,
+      misses: this.misses,
+      evictions: this.evictions,
+      size: this.size,
+      hitRate: total === 0 ? 0 : this.hits / total,
+    };
+  }
+
+  private expire(key: string): undefined {
+    this.delete(key);
+    this.misses++;
+    return undefined;
+  }
+}
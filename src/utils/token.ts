@@ -0,0 +1,80 @@
+import { fnv1aHex } from './hash';
+
+/**
+ * 访问令牌（JWT）本地校验
+ *
+ * 解析令牌中的过期时间，结果按令牌摘要缓存；页面加载时已过期的令牌不再请求服务端校验
+ */
+
+/**
+ * 令牌声明（只解析前端用到的字段）
+ */
+export interface TokenClaims {
+  sub?: string;
+  exp?: number;
+  iat?: number;
+  [key: string]: any;
+}
+
+// 本地判断过期时预留的时钟误差（秒）
+const CLOCK_SKEW = 30;
+// 解析结果缓存的最大条数
+const MAX_CLAIMS = 16;
+
+const claimsCache = new Map<string, TokenClaims | null>();
+
+/**
+ * 令牌摘要（缓存中不保存令牌原文）
+ */
+export function tokenHash(token: string): string {
+  return fnv1aHex(token, 0) + fnv1aHex(token, 0x5bd1e995);
+}
+
+function decodeBase64Url(text: string): string {
+  const base64 = text.replace(/-/g, '+').replace(/_/g, '/');
+  const binary = atob(base64.padEnd(Math.ceil(base64.length / 4) * 4, '='));
+  const bytes = Uint8Array.from(binary, (char) => char.charCodeAt(0));
+  return new TextDecoder().decode(bytes);
+}
+
+/**
+ * 解析令牌声明（不验证签名，签名由服务端验证）
+ * @returns 不是 JWT 格式时返回 null
+ */
+export function decodeToken(token: string): TokenClaims | null {
+  const hash = tokenHash(token);
+  if (claimsCache.has(hash)) {
+    return claimsCache.get(hash)!;
+  }
+
+  let claims: TokenClaims | null = null;
+  const parts = token.split('.');
+  if (parts.length === 3) {
+    try {
+      claims = JSON.parse(decodeBase64Url(parts[1]));
+    } catch (error) {
+      claims = null;
+    }
+  }
+
+  if (claimsCache.size >= MAX_CLAIMS) {
+    claimsCache.delete(claimsCache.keys().next().value!);
+  }
+  claimsCache.set(hash, claims);
+  return claims;
+}
+
+/**
+ * 令牌是否已过期（无法解析或没有过期时间时视为未过期，交给服务端判断）
+ */
+export function isTokenExpired(token: string): boolean {
+  const exp = decodeToken(token)?.exp;
+  return typeof exp === 'number' && exp - CLOCK_SKEW <= Date.now() / 1000;
+}
+
+/**
+ * 令牌在本地校验是否可用（未过期）
+ */
+export function isTokenUsable(token: string | null | undefined): token is string {
+  return !!token && !isTokenExpired(token);
+}